@@ -0,0 +1,63 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to use the class LinkCrawler to grow a graph of nodes and
+ * springs from the links of a website. the pages are loaded in the
+ * background, new nodes are added once per frame.
+ *
+ * KEYS
+ * s                   : stop loading
+ */
+
+import generativedesign.*;
+
+LinkCrawler crawler;
+
+
+void setup() {
+  size(800, 800);
+
+  crawler = new LinkCrawler("http://www.generative-gestaltung.de");
+  crawler.maxDepth = 2;
+  crawler.maxPages = 50;
+  crawler.template.set(width / 2, height / 2);
+  crawler.template.setBoundary(5, 5, width - 5, height - 5);
+  crawler.template.setRadius(100);
+  crawler.template.setStrength(-5);
+}
+
+
+void draw() {
+  background(255);
+
+  crawler.update();
+  Node[] nodes = crawler.getNodes();
+  Spring[] springs = crawler.getSprings();
+
+  for (int i = 0; i < crawler.getNodeCount(); i++) {
+    nodes[i].attract(nodes);
+  }
+  for (int i = 0; i < crawler.getSpringCount(); i++) {
+    springs[i].update();
+  }
+  for (int i = 0; i < crawler.getNodeCount(); i++) {
+    nodes[i].update();
+  }
+
+  stroke(0, 130, 164);
+  for (int i = 0; i < crawler.getSpringCount(); i++) {
+    line(springs[i].fromNode.x, springs[i].fromNode.y, springs[i].toNode.x, springs[i].toNode.y);
+  }
+  noStroke();
+  fill(0);
+  for (int i = 0; i < crawler.getNodeCount(); i++) {
+    ellipse(nodes[i].x, nodes[i].y, 8, 8);
+  }
+
+  text("pages loaded: " + crawler.getLoadedCount() + ", loading: " + crawler.getPendingCount() + ", nodes: " + crawler.getNodeCount(), 20, 30);
+}
+
+
+void keyPressed() {
+  if (key == 's' || key == 'S') crawler.stop();
+}
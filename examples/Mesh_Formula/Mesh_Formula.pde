@@ -0,0 +1,84 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to define your own forms with formulas, without writing a class
+ * that extends Mesh. the formulas are compiled, so they are calculated as
+ * fast as an overridden calculatePoints().
+ *
+ * KEYS
+ * 1-2                 : switch formulas
+ * arrow up/down       : parameter p0 +/-
+ */
+
+
+// imports
+import generativedesign.*;
+import processing.opengl.*;
+
+// mesh
+Mesh myMesh;
+
+String[][] formulas = {
+  // same form as in Mesh_Custom
+  {"2/3 * (cos(u)*cos(2*v) + sqrt(2)*sin(u)*cos(v)) * cos(u) / (sqrt(2) - sin(2*u)*sin(3*v))",
+   "2/3 * (cos(u)*sin(2*v) - sqrt(2)*sin(u)*sin(v)) * cos(u) / (sqrt(2) - sin(2*u)*sin(3*v))",
+   "sqrt(2) * cos(u)^2 / (sqrt(2) - sin(2*u)*sin(3*v))"},
+  // a torus with a wavy tube
+  {"(1 + (0.4 + 0.1*sin(p0*u)) * cos(v)) * cos(u)",
+   "(1 + (0.4 + 0.1*sin(p0*u)) * cos(v)) * sin(u)",
+   "(0.4 + 0.1*sin(p0*u)) * sin(v)"}
+};
+
+
+void setup() {
+  size(1000,1000,OPENGL);
+
+  // setup drawing style 
+  colorMode(HSB, 360, 100, 100, 100);
+  noStroke();
+
+  // initialize mesh
+  myMesh = new Mesh(this);
+  myMesh.setUCount(200);
+  myMesh.setVCount(200);
+  myMesh.setParam(0, 8);
+  myMesh.setColorRange(193, 193, 30, 30, 85, 85, 100);
+  myMesh.setFormula(formulas[0][0], formulas[0][1], formulas[0][2]);
+  myMesh.update();
+}
+
+
+void draw() {
+  background(255);
+
+  // setup lights
+  colorMode(RGB, 255, 255, 255, 100);
+  lightSpecular(255, 255, 255); 
+  directionalLight(255, 255, 255, 1, 1, -1); 
+  shininess(5.0); 
+
+  // setup view
+  translate(width*0.5, height*0.5);
+  scale(180);
+  rotateX(radians(10)); 
+  rotateY(radians(-10)); 
+
+  myMesh.draw();
+}
+
+
+void keyPressed() {
+  if (key == '1' || key == '2') {
+    String[] f = formulas[key - '1'];
+    myMesh.setFormula(f[0], f[1], f[2]);
+    myMesh.update();
+  }
+  if (keyCode == UP) {
+    myMesh.setParam(0, myMesh.getParam(0) + 1);
+    myMesh.update();
+  }
+  if (keyCode == DOWN) {
+    myMesh.setParam(0, myMesh.getParam(0) - 1);
+    myMesh.update();
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how meshes far away from the camera are drawn with fewer faces, if
+ * the level of detail is chosen automatically.
+ *
+ * KEYS
+ * l                   : level of detail on/off
+ * r                   : retained mode on/off
+ * arrow up/down       : move camera
+ */
+
+
+// imports
+import generativedesign.*;
+import processing.opengl.*;
+
+Mesh[] meshes = new Mesh[25];
+float cameraZ = 0;
+boolean lod = true;
+
+
+void setup() {
+  size(1000,1000,OPENGL);
+
+  colorMode(HSB, 360, 100, 100, 100);
+  noStroke();
+
+  for (int i = 0; i < meshes.length; i++) {
+    meshes[i] = new Mesh(this, Mesh.TORUS, 200, 200, -PI, PI, -PI, PI);
+    meshes[i].setColorRange(193, 193, 30, 30, 85, 85, 100);
+    meshes[i].setLod(lod);
+  }
+}
+
+
+void draw() {
+  background(255);
+
+  colorMode(RGB, 255, 255, 255, 100);
+  lightSpecular(255, 255, 255); 
+  directionalLight(255, 255, 255, 1, 1, -1); 
+  shininess(5.0); 
+
+  translate(width*0.5, height*0.5, cameraZ);
+
+  // a row of meshes going away from the camera
+  for (int i = 0; i < meshes.length; i++) {
+    pushMatrix();
+    translate((i % 2 == 0 ? -1 : 1) * 150, 0, -i * 400);
+    scale(60);
+    rotateX(radians(60)); 
+    meshes[i].draw();
+    popMatrix();
+  }
+
+  if (frameCount % 60 == 0) {
+    println("triangles per frame: " + Mesh.getTrianglesPerFrame());
+  }
+}
+
+
+void keyPressed() {
+  if (key == 'l' || key == 'L') {
+    lod = !lod;
+    for (int i = 0; i < meshes.length; i++) {
+      meshes[i].setLod(lod);
+      meshes[i].setLevel(0);
+    }
+  }
+  if (key == 'r' || key == 'R') {
+    for (int i = 0; i < meshes.length; i++) {
+      meshes[i].setRetained(!meshes[i].isRetained());
+    }
+  }
+  if (keyCode == UP) cameraZ += 200;
+  if (keyCode == DOWN) cameraZ -= 200;
+}
@@ -0,0 +1,67 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to morph a mesh between forms and animate its parameters. the
+ * points are calculated in the background, so the animation stays smooth
+ * even with many points.
+ *
+ * KEYS
+ * 1-4                 : morph to another form
+ * space               : animate to random parameters
+ */
+
+
+// imports
+import generativedesign.*;
+import processing.opengl.*;
+
+Mesh myMesh;
+MeshAnimator animator;
+
+int[] forms = {Mesh.SPHERE, Mesh.TORUS, Mesh.KIDNEY, Mesh.SUPERFORMULA};
+
+
+void setup() {
+  size(1000,1000,OPENGL);
+
+  colorMode(HSB, 360, 100, 100, 100);
+  noStroke();
+
+  myMesh = new Mesh(this, Mesh.SPHERE, 400, 400);
+  myMesh.setColorRange(193, 193, 30, 30, 85, 85, 100);
+
+  animator = new MeshAnimator(myMesh);
+}
+
+
+void draw() {
+  background(255);
+
+  colorMode(RGB, 255, 255, 255, 100);
+  lightSpecular(255, 255, 255); 
+  directionalLight(255, 255, 255, 1, 1, -1); 
+  shininess(5.0); 
+
+  translate(width*0.5, height*0.5);
+  scale(150);
+  rotateX(radians(frameCount * 0.3)); 
+  rotateY(radians(-10)); 
+
+  // take the points calculated in the background
+  animator.update();
+  myMesh.draw();
+}
+
+
+void keyPressed() {
+  if (key >= '1' && key <= '4') {
+    animator.morph(forms[key - '1'], myMesh.getParams(), 1500);
+  }
+  if (key == ' ') {
+    float[] params = new float[12];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random(0.3, 2);
+    }
+    animator.animate(params, 1500);
+  }
+}
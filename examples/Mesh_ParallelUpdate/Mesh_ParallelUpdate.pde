@@ -0,0 +1,70 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * measures how long Mesh.update() takes for a large superformula mesh with
+ * 1, 2, 4, ... threads. the rows of the mesh are calculated in parallel, so
+ * the time should go down with the number of cores of the computer.
+ * the results are shown in the window and printed to the console.
+ */
+
+import generativedesign.*;
+import java.util.concurrent.*;
+
+Mesh mesh;
+String results = "";
+
+
+void setup() {
+  size(400, 400);
+
+  mesh = new Mesh(this, Mesh.SUPERFORMULA, 1000, 1000);
+  // unchanged meshes are not calculated again, so switch off the cache
+  mesh.setCacheSize(0);
+  println("cores: " + Runtime.getRuntime().availableProcessors());
+
+  // serial for comparison
+  mesh.setParallel(false);
+  addResult("serial", measure());
+  mesh.setParallel(true);
+
+  for (int threads = 1; threads <= 32; threads *= 2) {
+    // the mesh uses the pool it is updated from
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    float time = pool.invoke(new RecursiveTask<Float>() {
+      protected Float compute() {
+        return measure();
+      }
+    });
+    pool.shutdown();
+    addResult(threads + " threads", time);
+  }
+}
+
+
+float measure() {
+  // warm up, then take the average of some updates. invalidate() makes
+  // update() calculate the points again, although nothing has changed.
+  mesh.invalidate();
+  mesh.update();
+  int count = 5;
+  long start = System.nanoTime();
+  for (int i = 0; i < count; i++) {
+    mesh.invalidate();
+    mesh.update();
+  }
+  return (System.nanoTime() - start) / 1e6 / count;
+}
+
+
+void addResult(String theName, float theTime) {
+  String line = theName + ": " + nf(theTime, 0, 1) + " ms";
+  println(line);
+  results += line + "\n";
+}
+
+
+void draw() {
+  background(255);
+  fill(0);
+  text(results, 20, 30);
+}
@@ -0,0 +1,111 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to use the classes NodeBroadcaster and NodeReceiver to send the
+ * positions of many nodes to other programs. to measure throughput and
+ * latency, the broadcaster and two receivers run in this sketch and talk to
+ * each other over localhost. the left half shows the simulation, the right
+ * half the nodes of the first receiver. frames per second and latency of
+ * every receiver are shown and printed every second.
+ *
+ * a stalled viewer is a connection that never reads anything. it only skips
+ * frames itself, the other receivers keep their frame rate.
+ *
+ * KEYS
+ * v                   : connect or disconnect a stalled viewer
+ */
+
+import generativedesign.*;
+
+int nodeCount = 100000;
+int port = 12000;
+Node[] nodes = new Node[nodeCount];
+Node[] received = new Node[nodeCount];
+
+NodeBroadcaster broadcaster;
+NodeReceiver[] receivers = new NodeReceiver[2];
+java.net.Socket stalledViewer = null;
+
+// frames read per second by every receiver
+float[] frameRates = new float[receivers.length];
+int[] frameCounts = new int[receivers.length];
+int lastSecond = 0;
+
+
+void setup() {
+  size(1000, 500);
+
+  for (int i = 0; i < nodeCount; i++) {
+    nodes[i] = new Node(random(width / 2), random(height));
+    nodes[i].setBoundary(0, 0, width / 2, height);
+    nodes[i].setDamping(0.05);
+    received[i] = new Node();
+  }
+
+  broadcaster = new NodeBroadcaster(nodes, port, 0, 0, 0, width / 2, height, 0);
+  for (int i = 0; i < receivers.length; i++) {
+    receivers[i] = new NodeReceiver("localhost", port);
+  }
+}
+
+
+void draw() {
+  background(255);
+
+  for (int i = 0; i < nodeCount; i++) {
+    nodes[i].velocity.x += random(-0.5, 0.5);
+    nodes[i].velocity.y += random(-0.5, 0.5);
+    nodes[i].update2D();
+  }
+  broadcaster.publish();
+
+  // both receivers read into the same nodes. normally every receiver runs in
+  // its own sketch, on this or on another computer.
+  for (int i = 0; i < receivers.length; i++) {
+    if (receivers[i].read(received)) frameCounts[i]++;
+  }
+
+  stroke(0, 50);
+  for (int i = 0; i < nodeCount; i += 10) {
+    point(nodes[i].x, nodes[i].y);
+    point(width / 2 + received[i].x, received[i].y);
+  }
+  stroke(0);
+  line(width / 2, 0, width / 2, height);
+
+  if (millis() - lastSecond >= 1000) {
+    float seconds = (millis() - lastSecond) / 1000.0;
+    for (int i = 0; i < receivers.length; i++) {
+      frameRates[i] = frameCounts[i] / seconds;
+      frameCounts[i] = 0;
+      println("receiver " + i + ": " + nf(frameRates[i], 0, 1) + " frames/s, latency " + nf(receivers[i].getLatency(), 0, 2) + " ms");
+    }
+    lastSecond = millis();
+  }
+
+  noStroke();
+  fill(255, 200);
+  rect(10, 10, 330, 40 + receivers.length * 20);
+  fill(0);
+  text("sketch: " + nf(frameRate, 0, 1) + " frames/s, " + nodeCount + " nodes, " + broadcaster.getReceiverCount() + " connections", 20, 30);
+  for (int i = 0; i < receivers.length; i++) {
+    text("receiver " + i + ": " + nf(frameRates[i], 0, 1) + " frames/s, latency " + nf(receivers[i].getLatency(), 0, 2) + " ms", 20, 50 + i * 20);
+  }
+  text("stalled viewer: " + (stalledViewer != null ? "on" : "off") + " (press 'v')", 20, 50 + receivers.length * 20);
+}
+
+
+void keyReleased() {
+  if (key == 'v' || key == 'V') {
+    try {
+      if (stalledViewer == null) {
+        stalledViewer = new java.net.Socket("localhost", port);
+      } else {
+        stalledViewer.close();
+        stalledViewer = null;
+      }
+    } catch (java.io.IOException e) {
+      println("localhost:" + port + " not accessible");
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to use the class MortonOrder to keep nodes and springs that are
+ * close to each other in space also close to each other in memory.
+ * the nodes and springs are shuffled at the beginning (as it happens after
+ * some time of simulation). the time needed for one simulation step is
+ * shown before and after sorting.
+ *
+ * KEYS
+ * s                   : sort nodes and springs along the morton curve
+ * r                   : shuffle nodes and springs again
+ */
+
+import generativedesign.*;
+
+int gridSize = 500;
+Node[] nodes = new Node[gridSize * gridSize];
+Spring[] springs = new Spring[2 * gridSize * (gridSize - 1)];
+
+float stepTime = 0;
+
+
+void setup() {
+  size(600, 600);
+
+  // create a grid of nodes connected by springs
+  for (int i = 0; i < nodes.length; i++) {
+    nodes[i] = new Node(i % gridSize, i / gridSize);
+    nodes[i].setDamping(0.5);
+  }
+  int s = 0;
+  for (int iy = 0; iy < gridSize; iy++) {
+    for (int ix = 0; ix < gridSize; ix++) {
+      Node n = nodes[iy * gridSize + ix];
+      if (ix < gridSize - 1) springs[s++] = new Spring(n, nodes[iy * gridSize + ix + 1], 1, 0.6, 0.9);
+      if (iy < gridSize - 1) springs[s++] = new Spring(n, nodes[(iy + 1) * gridSize + ix], 1, 0.6, 0.9);
+    }
+  }
+
+  shuffle();
+}
+
+
+void draw() {
+  background(255);
+
+  int start = millis();
+  for (int i = 0; i < springs.length; i++) {
+    springs[i].update();
+  }
+  for (int i = 0; i < nodes.length; i++) {
+    nodes[i].update();
+  }
+  stepTime = lerp(stepTime, millis() - start, 0.1);
+
+  fill(0);
+  text("nodes: " + nodes.length + ", springs: " + springs.length, 20, 30);
+  text("step time: " + nf(stepTime, 0, 1) + " ms", 20, 50);
+  text("press 's' to sort, 'r' to shuffle", 20, 70);
+}
+
+
+void shuffle() {
+  for (int i = nodes.length - 1; i > 0; i--) {
+    int j = int(random(i + 1));
+    Node n = nodes[i];
+    nodes[i] = nodes[j];
+    nodes[j] = n;
+  }
+  for (int i = springs.length - 1; i > 0; i--) {
+    int j = int(random(i + 1));
+    Spring sp = springs[i];
+    springs[i] = springs[j];
+    springs[j] = sp;
+  }
+}
+
+
+void keyReleased() {
+  if (key == 's' || key == 'S') MortonOrder.sort(nodes, springs);
+  if (key == 'r' || key == 'R') shuffle();
+}
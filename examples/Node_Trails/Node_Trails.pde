@@ -0,0 +1,64 @@
+/**
+ * part of the example files of the generativedesign library.
+ *
+ * shows how to use the class NodeTrails to draw the motion trails of many
+ * nodes. all positions are kept in one preallocated buffer, so nothing is
+ * allocated while the trails are recorded and drawn.
+ *
+ * KEYS
+ * 1-9                 : change the length of the trails
+ * c                   : clear all trails
+ */
+
+import generativedesign.*;
+
+int nodeCount = 2000;
+Node[] nodes = new Node[nodeCount];
+NodeTrails trails;
+NodeTrails.Cursor cursor;
+
+
+void setup() {
+  size(800, 800);
+
+  for (int i = 0; i < nodeCount; i++) {
+    nodes[i] = new Node(random(width), random(height));
+    nodes[i].setBoundary(0, 0, width, height);
+    nodes[i].setDamping(0.05);
+  }
+
+  trails = new NodeTrails(nodeCount, 50, true);
+  cursor = trails.cursor();
+}
+
+
+void draw() {
+  background(255);
+
+  for (int i = 0; i < nodeCount; i++) {
+    nodes[i].velocity.x += random(-0.5, 0.5);
+    nodes[i].velocity.y += random(-0.5, 0.5);
+    nodes[i].update2D();
+  }
+  trails.record(nodes);
+
+  noFill();
+  stroke(0, 80);
+  for (int i = 0; i < nodeCount; i++) {
+    beginShape();
+    cursor.begin(i);
+    while (cursor.next()) {
+      vertex(cursor.x, cursor.y);
+    }
+    endShape();
+  }
+
+  fill(0);
+  text("trail length: " + trails.getLength(), 20, 30);
+}
+
+
+void keyPressed() {
+  if (key >= '1' && key <= '9') trails.setLength((key - '0') * 20);
+  if (key == 'c' || key == 'C') trails.clear();
+}
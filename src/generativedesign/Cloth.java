@@ -0,0 +1,357 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import processing.core.PVector;
+
+/**
+ * Simulates a piece of cloth or a membrane based on the grid of a mesh. Every
+ * point of the mesh becomes a particle, that is connected to its neighbors
+ * (structural), its diagonal neighbors (shear) and the neighbors after next
+ * (bending). The form of the mesh at the time of creation is the rest shape,
+ * so a cloth made from a sphere tries to stay a sphere.
+ * <p>
+ * As the grid is regular, positions and rest lengths are stored in flat
+ * arrays and neighbors are found by their index instead of using Node and
+ * Spring objects. update() writes the new positions into the points of the
+ * mesh, so the mesh can be drawn as usual.
+ * 
+ * <pre>
+ * mesh = new Mesh(this, Mesh.PLANE, 40, 40);
+ * cloth = new Cloth(mesh);
+ * cloth.pin(0, 0);
+ * cloth.pin(40, 0);
+ * cloth.setGravity(0, 0.01f, 0);
+ * ...
+ * cloth.update();
+ * mesh.draw();
+ * </pre>
+ * 
+ * The points on the seams of closed forms (e.g. a torus) are simulated as
+ * separate particles.
+ */
+public class Cloth {
+
+	// ------ constants ------
+	// directions of the connections: right, down, diagonal, anti-diagonal,
+	// right after next, down after next
+	final static int[] DU = { 1, 0, 1, -1, 2, 0 };
+	final static int[] DV = { 0, 1, 1, 1, 0, 2 };
+
+	// ------ public properties ------
+	/**
+	 * Acceleration added to all particles in every update
+	 */
+	public PVector gravity = new PVector();
+	/**
+	 * Damping of the velocity: 0 = no damping, 1 = full damping (default =
+	 * 0.01)
+	 */
+	public float damping = 0.01f;
+	/**
+	 * Number of iterations for solving the connections (default = 4)
+	 */
+	public int iterations = 4;
+	/**
+	 * Stiffness of the connections to the direct neighbors (default = 1)
+	 */
+	public float structuralStiffness = 1;
+	/**
+	 * Stiffness of the diagonal connections (default = 0.5)
+	 */
+	public float shearStiffness = 0.5f;
+	/**
+	 * Stiffness of the connections to the neighbors after next (default = 0.2)
+	 */
+	public float bendStiffness = 0.2f;
+
+	// ------ private properties ------
+	Mesh mesh;
+	int columns, rows, count;
+
+	// positions of the particles (x, y, z for every particle)
+	float[] positions, previous, rest;
+	boolean[] pinned;
+	// rest length of every connection, per direction and particle
+	float[][] lengths = new float[6][];
+
+	// ------ constructors ------
+	/**
+	 * Creates a cloth with the current points of the mesh as rest shape.
+	 * 
+	 * @param theMesh
+	 *            The mesh to simulate. Its points are changed by update().
+	 */
+	public Cloth(Mesh theMesh) {
+		mesh = theMesh;
+		columns = mesh.columns;
+		rows = mesh.rows;
+		count = columns * rows;
+
+		// the mesh stores its points in the same order
+		rest = mesh.vertices.clone();
+		positions = rest.clone();
+		previous = rest.clone();
+		pinned = new boolean[count];
+
+		for (int d = 0; d < 6; d++) {
+			lengths[d] = new float[count];
+			for (int iv = 0; iv + DV[d] < rows; iv++) {
+				for (int iu = Math.max(-DU[d], 0); iu < columns
+						&& iu + DU[d] < columns; iu++) {
+					int a = iv * columns + iu;
+					int b = (iv + DV[d]) * columns + iu + DU[d];
+					lengths[d][a] = distance(rest, a, b);
+				}
+			}
+		}
+	}
+
+	static float distance(float[] thePositions, int a, int b) {
+		float dx = thePositions[b * 3] - thePositions[a * 3];
+		float dy = thePositions[b * 3 + 1] - thePositions[a * 3 + 1];
+		float dz = thePositions[b * 3 + 2] - thePositions[a * 3 + 2];
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	// ------ simulation ------
+	/**
+	 * Moves the particles, solves the connections and writes the positions
+	 * to the points of the mesh.
+	 */
+	public void update() {
+		integrate();
+
+		for (int it = 0; it < iterations; it++) {
+			for (int d = 0; d < 6; d++) {
+				float stiffness = d < 2 ? structuralStiffness
+						: (d < 4 ? shearStiffness : bendStiffness);
+				if (stiffness > 0)
+					solve(d, stiffness);
+			}
+		}
+
+		writeToMesh();
+	}
+
+	// verlet integration: the velocity is the difference to the previous
+	// position
+	void integrate() {
+		float f = 1 - damping;
+		for (int i = 0; i < count; i++) {
+			if (pinned[i])
+				continue;
+			int j = i * 3;
+			float x = positions[j];
+			float y = positions[j + 1];
+			float z = positions[j + 2];
+			positions[j] += (x - previous[j]) * f + gravity.x;
+			positions[j + 1] += (y - previous[j + 1]) * f + gravity.y;
+			positions[j + 2] += (z - previous[j + 2]) * f + gravity.z;
+			previous[j] = x;
+			previous[j + 1] = y;
+			previous[j + 2] = z;
+		}
+	}
+
+	void solve(int theDirection, float theStiffness) {
+		int du = DU[theDirection];
+		int dv = DV[theDirection];
+		float[] length = lengths[theDirection];
+		float[] p = positions;
+
+		for (int iv = 0; iv + dv < rows; iv++) {
+			int iuStart = Math.max(-du, 0);
+			int iuEnd = Math.min(columns, columns - du);
+			for (int iu = iuStart; iu < iuEnd; iu++) {
+				int a = iv * columns + iu;
+				int b = a + dv * columns + du;
+				boolean pinnedA = pinned[a];
+				boolean pinnedB = pinned[b];
+				if (pinnedA && pinnedB)
+					continue;
+
+				int ja = a * 3, jb = b * 3;
+				float dx = p[jb] - p[ja];
+				float dy = p[jb + 1] - p[ja + 1];
+				float dz = p[jb + 2] - p[ja + 2];
+				float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (d == 0)
+					continue;
+
+				float f = theStiffness * (d - length[a]) / d;
+				// pinned particles don't move, the other one moves the whole
+				// way
+				if (!pinnedA && !pinnedB)
+					f *= 0.5f;
+				dx *= f;
+				dy *= f;
+				dz *= f;
+				if (!pinnedA) {
+					p[ja] += dx;
+					p[ja + 1] += dy;
+					p[ja + 2] += dz;
+				}
+				if (!pinnedB) {
+					p[jb] -= dx;
+					p[jb + 1] -= dy;
+					p[jb + 2] -= dz;
+				}
+			}
+		}
+	}
+
+	void writeToMesh() {
+		if (mesh.vertices.length == positions.length) {
+			System.arraycopy(positions, 0, mesh.vertices, 0, positions.length);
+			mesh.invalidate();
+		}
+	}
+
+	/**
+	 * Moves all particles back to the rest shape.
+	 */
+	public void reset() {
+		System.arraycopy(rest, 0, positions, 0, rest.length);
+		System.arraycopy(rest, 0, previous, 0, rest.length);
+		writeToMesh();
+	}
+
+	// ------ pinning ------
+	/**
+	 * Pins a particle, so it isn't moved by the simulation. Particles are
+	 * addressed like the points of the mesh: there is one column more than
+	 * uCount and one row more than vCount, so for a regular mesh the corners
+	 * are (0, 0) and (uCount, vCount). For adaptive meshes, the columns and
+	 * rows are the ones the mesh had when the cloth was created (see
+	 * getColumnCount() and getRowCount()).
+	 * 
+	 * @param theU
+	 *            Column of the particle (0 to getColumnCount() - 1)
+	 * @param theV
+	 *            Row of the particle (0 to getRowCount() - 1)
+	 */
+	public void pin(int theU, int theV) {
+		pinned[index(theU, theV)] = true;
+	}
+
+	/**
+	 * Releases a pinned particle.
+	 */
+	public void unpin(int theU, int theV) {
+		pinned[index(theU, theV)] = false;
+	}
+
+	public boolean isPinned(int theU, int theV) {
+		return pinned[index(theU, theV)];
+	}
+
+	/**
+	 * Moves a particle to the given position, e.g. to drag a pinned particle
+	 * around.
+	 */
+	public void setPosition(int theU, int theV, float theX, float theY,
+			float theZ) {
+		int j = index(theU, theV) * 3;
+		positions[j] = theX;
+		positions[j + 1] = theY;
+		positions[j + 2] = theZ;
+		previous[j] = theX;
+		previous[j + 1] = theY;
+		previous[j + 2] = theZ;
+	}
+
+	public PVector getPosition(int theU, int theV) {
+		int j = index(theU, theV) * 3;
+		return new PVector(positions[j], positions[j + 1], positions[j + 2]);
+	}
+
+	int index(int theU, int theV) {
+		if (theU < 0 || theU >= columns || theV < 0 || theV >= rows) {
+			throw new IndexOutOfBoundsException("Particle (" + theU + ", "
+					+ theV + ") is not part of the cloth");
+		}
+		return theV * columns + theU;
+	}
+
+	// ------ getters and setters ------
+	public Mesh getMesh() {
+		return mesh;
+	}
+
+	/**
+	 * @return Number of particles in u direction (uCount + 1 for a regular
+	 *         mesh)
+	 */
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return Number of particles in v direction (vCount + 1 for a regular
+	 *         mesh)
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return Positions of all particles (x, y and z for every particle, row
+	 *         by row). Particle (u, v) starts at (v * getColumnCount() + u) *
+	 *         3.
+	 */
+	public float[] getPositions() {
+		return positions;
+	}
+
+	public PVector getGravity() {
+		return gravity;
+	}
+
+	public void setGravity(float theX, float theY, float theZ) {
+		gravity.set(theX, theY, theZ);
+	}
+
+	public float getDamping() {
+		return damping;
+	}
+
+	public void setDamping(float theDamping) {
+		this.damping = theDamping;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public void setIterations(int theIterations) {
+		this.iterations = theIterations;
+	}
+
+	public void setStiffness(float theStructural, float theShear,
+			float theBend) {
+		structuralStiffness = theStructural;
+		shearStiffness = theShear;
+		bendStiffness = theBend;
+	}
+
+}
@@ -562,9 +562,22 @@ public class GenerativeDesign {
 	 *            ArrayList to unsort
 	 */
 	public static void unsort(ArrayList<Object> theList) {
+		unsort(theList, RandomSource.local());
+	}
+
+	/**
+	 * Takes an ArrayList and reorders the elements randomly. The same seed
+	 * gives the same order.
+	 * 
+	 * @param theList
+	 *            ArrayList to unsort
+	 * @param theRandom
+	 *            Source of the random numbers
+	 */
+	public static void unsort(ArrayList<Object> theList, RandomSource theRandom) {
 		for (int i = 0; i < theList.size(); i++) {
 			Object oi = theList.get(i);
-			int ir = (int) (Math.random() * theList.size());
+			int ir = theRandom.randomInt(theList.size());
 			Object oir = theList.get(ir);
 			theList.set(i, oir);
 			theList.set(ir, oi);
@@ -0,0 +1,407 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+/**
+ * Implicit (backward Euler) solver for springs. Spring.update() applies the
+ * forces of the current frame explicitly, so stiff springs overshoot and have
+ * to be weakened by the damping, and stiff networks need thousands of frames
+ * to settle. This solver calculates the velocity change that fits the forces
+ * at the end of the frame instead, by solving a sparse linear system with a
+ * preconditioned conjugate gradient method. It stays stable for very stiff
+ * springs and strong damping.
+ * <p>
+ * Every node is treated as a mass of 1. The stiffness of a spring is used as
+ * spring constant and may be much larger than 1. The damping of a spring
+ * damps the relative velocity of its nodes along the spring. Call update()
+ * instead of updating the springs, then update the nodes as usual:
+ * 
+ * <pre>
+ * ImplicitSpringSolver solver = new ImplicitSpringSolver(springs);
+ * ...
+ * solver.update();
+ * for (int i = 0; i &lt; nodes.length; i++) nodes[i].update();
+ * </pre>
+ * 
+ * If springs are added or removed or their nodes are exchanged, call
+ * setSprings() again.
+ */
+public class ImplicitSpringSolver {
+
+	// minimum number of springs or nodes per parallel task
+	final static int CHUNK_SIZE = 2048;
+
+	// ------ public properties ------
+	/**
+	 * Maximum number of conjugate gradient iterations per frame (default =
+	 * 50)
+	 */
+	public int maxIterations = 50;
+	/**
+	 * Relative residual at which the iterations stop (default = 0.0001)
+	 */
+	public float tolerance = 0.0001f;
+	/**
+	 * Use several cores for large spring systems (default = true)
+	 */
+	public boolean parallel = true;
+
+	// ------ private properties ------
+	SpringGraph graph;
+	int nodeCount;
+
+	// per spring: force on the from node (3), stiffness matrix (6) and
+	// matrix block of the system (6). symmetric 3x3 matrices are stored as
+	// xx, xy, xz, yy, yz, zz.
+	float[] forces, stiffness, blocks;
+	// per node: inverted diagonal block of the system (6)
+	float[] inverseDiagonal;
+	// vectors with 3 entries per node
+	float[] velocities, rhs, dv, r, z, p, ap;
+
+	// statistics of the last update
+	int iterationCount = 0;
+	float residual = 0;
+
+	// ------ constructors ------
+	/**
+	 * @param theSprings
+	 *            Springs to solve. The array may be filled up with null at the
+	 *            end.
+	 */
+	public ImplicitSpringSolver(Spring[] theSprings) {
+		setSprings(theSprings);
+	}
+
+	// ------ update ------
+	/**
+	 * Changes the velocities of all nodes attached to the springs.
+	 */
+	public void update() {
+		if (graph.springCount == 0)
+			return;
+
+		Node[] nodes = graph.nodes;
+		for (int n = 0; n < nodeCount; n++) {
+			velocities[n * 3] = nodes[n].velocity.x;
+			velocities[n * 3 + 1] = nodes[n].velocity.y;
+			velocities[n * 3 + 2] = nodes[n].velocity.z;
+		}
+
+		springLoop.execute(0, graph.springCount, CHUNK_SIZE, parallel);
+		nodeLoop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+		solve();
+
+		for (int n = 0; n < nodeCount; n++) {
+			nodes[n].velocity.x += dv[n * 3];
+			nodes[n].velocity.y += dv[n * 3 + 1];
+			nodes[n].velocity.z += dv[n * 3 + 2];
+		}
+	}
+
+	// forces and matrices of the springs
+	ParallelLoop springLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int i = theStart; i < theEnd; i++) {
+				Spring s = graph.springs[i];
+				Node a = graph.nodes[graph.fromIndex[i]];
+				Node b = graph.nodes[graph.toIndex[i]];
+				float dx = b.x - a.x;
+				float dy = b.y - a.y;
+				float dz = b.z - a.z;
+				float l = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+				int j3 = i * 3, j6 = i * 6;
+				if (l == 0) {
+					for (int j = 0; j < 3; j++)
+						forces[j3 + j] = 0;
+					for (int j = 0; j < 6; j++)
+						stiffness[j6 + j] = blocks[j6 + j] = 0;
+					continue;
+				}
+				dx /= l;
+				dy /= l;
+				dz /= l;
+
+				// spring force and damping of the relative velocity
+				float k = s.stiffness;
+				float c = s.damping;
+				float vRel = (b.velocity.x - a.velocity.x) * dx
+						+ (b.velocity.y - a.velocity.y) * dy
+						+ (b.velocity.z - a.velocity.z) * dz;
+				float f = k * (l - s.length) + c * vRel;
+				forces[j3] = f * dx;
+				forces[j3 + 1] = f * dy;
+				forces[j3 + 2] = f * dz;
+
+				// K = k * (d*d^T + (1 - L/l) * (I - d*d^T)). the second part is
+				// left out for compressed springs to keep the matrix positive
+				// definite.
+				float t = Math.max(0, 1 - s.length / l);
+				store(j6, k, c, t, dx * dx, 1);
+				store(j6 + 1, k, c, t, dx * dy, 0);
+				store(j6 + 2, k, c, t, dx * dz, 0);
+				store(j6 + 3, k, c, t, dy * dy, 1);
+				store(j6 + 4, k, c, t, dy * dz, 0);
+				store(j6 + 5, k, c, t, dz * dz, 1);
+			}
+		}
+
+		void store(int theIndex, float k, float c, float t, float dd,
+				float identity) {
+			float kj = k * (dd + t * (identity - dd));
+			stiffness[theIndex] = kj;
+			// time step is one frame: h^2 * K + h * C
+			blocks[theIndex] = kj + c * dd;
+		}
+	};
+
+	// diagonal blocks and right hand side
+	ParallelLoop nodeLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			float[] d = new float[6];
+			for (int n = theStart; n < theEnd; n++) {
+				d[0] = d[3] = d[5] = 1;
+				d[1] = d[2] = d[4] = 0;
+				int n3 = n * 3;
+				float bx = 0, by = 0, bz = 0;
+				int end = graph.nodeStart[n + 1];
+				for (int j = graph.nodeStart[n]; j < end; j++) {
+					int i = graph.nodeSprings[j] >> 1;
+					boolean isFrom = (graph.nodeSprings[j] & 1) == 0;
+					int other = isFrom ? graph.toIndex[i] : graph.fromIndex[i];
+					float sign = isFrom ? 1 : -1;
+					int i3 = i * 3, i6 = i * 6;
+					for (int e = 0; e < 6; e++)
+						d[e] += blocks[i6 + e];
+
+					// b = h * f - h^2 * K * (v - vOther)
+					float wx = velocities[n3] - velocities[other * 3];
+					float wy = velocities[n3 + 1] - velocities[other * 3 + 1];
+					float wz = velocities[n3 + 2] - velocities[other * 3 + 2];
+					float[] k = stiffness;
+					bx += sign * forces[i3]
+							- (k[i6] * wx + k[i6 + 1] * wy + k[i6 + 2] * wz);
+					by += sign * forces[i3 + 1]
+							- (k[i6 + 1] * wx + k[i6 + 3] * wy + k[i6 + 4] * wz);
+					bz += sign * forces[i3 + 2]
+							- (k[i6 + 2] * wx + k[i6 + 4] * wy + k[i6 + 5] * wz);
+				}
+				rhs[n3] = bx;
+				rhs[n3 + 1] = by;
+				rhs[n3 + 2] = bz;
+				invert(d, inverseDiagonal, n * 6);
+			}
+		}
+	};
+
+	// inverts a symmetric 3x3 matrix
+	static void invert(float[] m, float[] theResult, int theOffset) {
+		float a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+		float c00 = d * f - e * e;
+		float c01 = c * e - b * f;
+		float c02 = b * e - c * d;
+		float det = a * c00 + b * c01 + c * c02;
+		float s = det != 0 ? 1 / det : 0;
+		theResult[theOffset] = c00 * s;
+		theResult[theOffset + 1] = c01 * s;
+		theResult[theOffset + 2] = c02 * s;
+		theResult[theOffset + 3] = (a * f - c * c) * s;
+		theResult[theOffset + 4] = (b * c - a * e) * s;
+		theResult[theOffset + 5] = (a * d - b * b) * s;
+	}
+
+	// ------ conjugate gradient ------
+	void solve() {
+		int length = nodeCount * 3;
+
+		// the solution of the last frame is used as start value
+		multiply(dv, ap);
+		for (int i = 0; i < length; i++) {
+			r[i] = rhs[i] - ap[i];
+		}
+		precondition(r, z);
+		System.arraycopy(z, 0, p, 0, length);
+		double rz = dot(r, z);
+		double limit = tolerance * tolerance * Math.max(dot(rhs, rhs), 1e-30);
+
+		iterationCount = 0;
+		double rr = dot(r, r);
+		while (iterationCount < maxIterations && rr > limit) {
+			multiply(p, ap);
+			double pap = dot(p, ap);
+			if (pap <= 0)
+				break;
+			float alpha = (float) (rz / pap);
+			for (int i = 0; i < length; i++) {
+				dv[i] += alpha * p[i];
+				r[i] -= alpha * ap[i];
+			}
+			precondition(r, z);
+			double rzNew = dot(r, z);
+			float beta = (float) (rzNew / rz);
+			rz = rzNew;
+			for (int i = 0; i < length; i++) {
+				p[i] = z[i] + beta * p[i];
+			}
+			rr = dot(r, r);
+			iterationCount++;
+		}
+		residual = (float) Math.sqrt(rr / Math.max(dot(rhs, rhs), 1e-30));
+	}
+
+	float[] input, output;
+
+	// output = A * input
+	void multiply(float[] theInput, float[] theOutput) {
+		input = theInput;
+		output = theOutput;
+		multiplyLoop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+	}
+
+	ParallelLoop multiplyLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			float[] x = input;
+			float[] y = output;
+			float[] m = blocks;
+			for (int n = theStart; n < theEnd; n++) {
+				int n3 = n * 3;
+				float px = x[n3], py = x[n3 + 1], pz = x[n3 + 2];
+				// diagonal: identity plus all blocks of the springs
+				float yx = px, yy = py, yz = pz;
+				int end = graph.nodeStart[n + 1];
+				for (int j = graph.nodeStart[n]; j < end; j++) {
+					int i = graph.nodeSprings[j] >> 1;
+					int other = (graph.nodeSprings[j] & 1) == 0 ? graph.toIndex[i]
+							: graph.fromIndex[i];
+					int i6 = i * 6;
+					float wx = px - x[other * 3];
+					float wy = py - x[other * 3 + 1];
+					float wz = pz - x[other * 3 + 2];
+					yx += m[i6] * wx + m[i6 + 1] * wy + m[i6 + 2] * wz;
+					yy += m[i6 + 1] * wx + m[i6 + 3] * wy + m[i6 + 4] * wz;
+					yz += m[i6 + 2] * wx + m[i6 + 4] * wy + m[i6 + 5] * wz;
+				}
+				y[n3] = yx;
+				y[n3 + 1] = yy;
+				y[n3 + 2] = yz;
+			}
+		}
+	};
+
+	// block jacobi preconditioner: z = inverse diagonal * r
+	void precondition(float[] theR, float[] theZ) {
+		float[] m = inverseDiagonal;
+		for (int n = 0; n < nodeCount; n++) {
+			int n3 = n * 3, n6 = n * 6;
+			float x = theR[n3], y = theR[n3 + 1], z = theR[n3 + 2];
+			theZ[n3] = m[n6] * x + m[n6 + 1] * y + m[n6 + 2] * z;
+			theZ[n3 + 1] = m[n6 + 1] * x + m[n6 + 3] * y + m[n6 + 4] * z;
+			theZ[n3 + 2] = m[n6 + 2] * x + m[n6 + 4] * y + m[n6 + 5] * z;
+		}
+	}
+
+	static double dot(float[] a, float[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++) {
+			sum += a[i] * b[i];
+		}
+		return sum;
+	}
+
+	// ------ topology ------
+	/**
+	 * Sets the springs to solve. Has to be called again whenever springs are
+	 * added or removed or the nodes of a spring are changed.
+	 * 
+	 * @param theSprings
+	 *            Springs to solve. The array may be filled up with null at the
+	 *            end.
+	 */
+	public void setSprings(Spring[] theSprings) {
+		graph = new SpringGraph(theSprings);
+		nodeCount = graph.nodes.length;
+		int springCount = graph.springCount;
+
+		forces = new float[springCount * 3];
+		stiffness = new float[springCount * 6];
+		blocks = new float[springCount * 6];
+		inverseDiagonal = new float[nodeCount * 6];
+		velocities = new float[nodeCount * 3];
+		rhs = new float[nodeCount * 3];
+		dv = new float[nodeCount * 3];
+		r = new float[nodeCount * 3];
+		z = new float[nodeCount * 3];
+		p = new float[nodeCount * 3];
+		ap = new float[nodeCount * 3];
+	}
+
+	// ------ getters and setters ------
+	public Spring[] getSprings() {
+		return graph.springs;
+	}
+
+	/**
+	 * @return All nodes that are attached to at least one of the springs
+	 */
+	public Node[] getNodes() {
+		return graph.nodes;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int theMaxIterations) {
+		this.maxIterations = theMaxIterations;
+	}
+
+	public float getTolerance() {
+		return tolerance;
+	}
+
+	public void setTolerance(float theTolerance) {
+		this.tolerance = theTolerance;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean theParallel) {
+		this.parallel = theParallel;
+	}
+
+	/**
+	 * @return Number of conjugate gradient iterations of the last update
+	 */
+	public int getIterationCount() {
+		return iterationCount;
+	}
+
+	/**
+	 * @return Relative residual after the last update
+	 */
+	public float getResidual() {
+		return residual;
+	}
+
+}
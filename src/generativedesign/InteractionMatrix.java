@@ -0,0 +1,145 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+/**
+ * Table of attraction parameters for systems with several kinds of nodes
+ * ("species"). For every pair of species it stores strength, radius and ramp
+ * that are used instead of the values of the nodes. This way nodes of one
+ * species can attract nodes of a second species, while they are repulsed by
+ * a third one.
+ * <p>
+ * The species of a node is set with Node.setSpecies() and has to be smaller
+ * than the number of species of the table. The table is used by the class
+ * NeighborList:
+ * 
+ * <pre>
+ * InteractionMatrix interactions = new InteractionMatrix(3);
+ * interactions.set(0, 1, 2, 100, 1); // species 0 attracts species 1
+ * interactions.set(1, 0, -1, 50, 1); // species 1 repulses species 0
+ * neighborList.setInteractions(interactions);
+ * </pre>
+ */
+public class InteractionMatrix {
+
+	// ------ private properties ------
+	int speciesCount;
+	// values for every pair, index = source * speciesCount + target
+	float[] strength;
+	float[] radius;
+	float[] ramp;
+
+	// ------ constructors ------
+	/**
+	 * Creates a table where all pairs of species have the default values of
+	 * the Node class (strength = -1, radius = 200, ramp = 1).
+	 * 
+	 * @param theSpeciesCount
+	 *            Number of species
+	 */
+	public InteractionMatrix(int theSpeciesCount) {
+		speciesCount = Math.max(theSpeciesCount, 1);
+		int n = speciesCount * speciesCount;
+		strength = new float[n];
+		radius = new float[n];
+		ramp = new float[n];
+		for (int i = 0; i < n; i++) {
+			strength[i] = -1;
+			radius[i] = 200;
+			ramp[i] = 1;
+		}
+	}
+
+	// ------ public methods ------
+	/**
+	 * Sets the parameters for the effect of nodes of one species on nodes of
+	 * another species.
+	 * 
+	 * @param theSource
+	 *            Species of the attracting (or repulsing) nodes
+	 * @param theTarget
+	 *            Species of the nodes that are attracted (or repulsed)
+	 * @param theStrength
+	 *            Positive for attraction, negative for repulsion
+	 * @param theRadius
+	 *            Radius of impact
+	 * @param theRamp
+	 *            Parameter that influences the form of the function
+	 */
+	public void set(int theSource, int theTarget, float theStrength,
+			float theRadius, float theRamp) {
+		int i = index(theSource, theTarget);
+		strength[i] = theStrength;
+		radius[i] = theRadius;
+		ramp[i] = theRamp;
+	}
+
+	/**
+	 * @return The largest radius of all pairs of species
+	 */
+	public float getMaxRadius() {
+		float max = 0;
+		for (int i = 0; i < radius.length; i++) {
+			max = Math.max(max, radius[i]);
+		}
+		return max;
+	}
+
+	int index(int theSource, int theTarget) {
+		if (theSource < 0 || theSource >= speciesCount || theTarget < 0
+				|| theTarget >= speciesCount) {
+			throw new IndexOutOfBoundsException("Species must be between 0 and "
+					+ (speciesCount - 1));
+		}
+		return theSource * speciesCount + theTarget;
+	}
+
+	// ------ getters and setters ------
+	public int getSpeciesCount() {
+		return speciesCount;
+	}
+
+	public float getStrength(int theSource, int theTarget) {
+		return strength[index(theSource, theTarget)];
+	}
+
+	public void setStrength(int theSource, int theTarget, float theStrength) {
+		strength[index(theSource, theTarget)] = theStrength;
+	}
+
+	public float getRadius(int theSource, int theTarget) {
+		return radius[index(theSource, theTarget)];
+	}
+
+	public void setRadius(int theSource, int theTarget, float theRadius) {
+		radius[index(theSource, theTarget)] = theRadius;
+	}
+
+	public float getRamp(int theSource, int theTarget) {
+		return ramp[index(theSource, theTarget)];
+	}
+
+	public void setRamp(int theSource, int theTarget, float theRamp) {
+		ramp[index(theSource, theTarget)] = theRamp;
+	}
+
+}
@@ -0,0 +1,459 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.parser.ParserDelegator;
+
+/**
+ * Grows a graph of nodes and springs by following the links of web pages.
+ * Several pages are loaded at the same time by a small pool of threads. The
+ * links are picked out while a page is being read, so a page is never held in
+ * memory completely. Every URL becomes one node (its id is the URL) and every
+ * link becomes one spring.
+ * <p>
+ * The threads never touch the nodes and springs. They put the links they
+ * find into a queue, which is emptied by update(). Call it once per frame,
+ * before the nodes and springs are updated:
+ * 
+ * <pre>
+ * LinkCrawler crawler = new LinkCrawler("http://www.generative-gestaltung.de");
+ * ...
+ * crawler.update();
+ * Node[] nodes = crawler.getNodes();
+ * Spring[] springs = crawler.getSprings();
+ * </pre>
+ * 
+ * Both arrays are filled up with null at the end and are replaced by larger
+ * arrays when the graph grows, so get them again after every update().
+ */
+public class LinkCrawler {
+
+	// ------ public properties ------
+	/**
+	 * Maximum number of links between the start page and a page that is
+	 * loaded (default = 2). Links on the pages at this depth still become
+	 * nodes, but their pages are not loaded.
+	 */
+	public int maxDepth = 2;
+	/**
+	 * Maximum number of pages to load (default = 100)
+	 */
+	public int maxPages = 100;
+	/**
+	 * Maximum number of new nodes per call of update() (default = 50). The
+	 * rest stays in the queue for the next frames, so the graph grows
+	 * smoothly.
+	 */
+	public int maxNodesPerFrame = 50;
+	/**
+	 * Only follow links to pages on the same host as the start page (default
+	 * = true)
+	 */
+	public boolean sameHost = true;
+	/**
+	 * Time in milliseconds to wait for a page (default = 5000)
+	 */
+	public int timeout = 5000;
+	/**
+	 * Length of the new springs (default = 100)
+	 */
+	public float springLength = 100;
+	/**
+	 * Stiffness of the new springs (default = 0.6)
+	 */
+	public float stiffness = 0.6f;
+	/**
+	 * Damping of the new springs (default = 0.9)
+	 */
+	public float damping = 0.9f;
+	/**
+	 * New nodes get the radius, strength, damping, boundary, etc. of this node
+	 */
+	public Node template = new Node();
+
+	// ------ private properties ------
+	URL start;
+	int threadCount;
+	ExecutorService pool;
+
+	// shared with the loading threads
+	ConcurrentHashMap<String, Boolean> seen = 
+			new ConcurrentHashMap<String, Boolean>();
+	ConcurrentLinkedQueue<Link> links = new ConcurrentLinkedQueue<Link>();
+	AtomicInteger scheduled = new AtomicInteger();
+	AtomicInteger pending = new AtomicInteger();
+	AtomicInteger loaded = new AtomicInteger();
+	AtomicInteger failed = new AtomicInteger();
+
+	// only used by update()
+	HashMap<String, Node> nodesByURL = new HashMap<String, Node>();
+	Node[] nodes = new Node[16];
+	Spring[] springs = new Spring[16];
+	int nodeCount = 0;
+	int springCount = 0;
+	RandomSource random = new RandomSource();
+
+	// a link found on a page. from is null for the start page.
+	static class Link {
+		String from, to;
+
+		Link(String theFrom, String theTo) {
+			from = theFrom;
+			to = theTo;
+		}
+	}
+
+	// ------ constructors ------
+	/**
+	 * Starts loading with 4 threads.
+	 * 
+	 * @param theURL
+	 *            URL of the start page
+	 */
+	public LinkCrawler(String theURL) {
+		this(theURL, 4);
+	}
+
+	/**
+	 * @param theURL
+	 *            URL of the start page
+	 * @param theThreadCount
+	 *            Number of pages that are loaded at the same time
+	 */
+	public LinkCrawler(String theURL, int theThreadCount) {
+		threadCount = Math.max(theThreadCount, 1);
+		pool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			public Thread newThread(Runnable theRunnable) {
+				Thread thread = new Thread(theRunnable, "LinkCrawler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		String url = normalize(null, theURL);
+		if (url == null) {
+			System.out.println(theURL + " not accessible");
+			return;
+		}
+		try {
+			start = new URL(url);
+		} catch (Exception e) {
+			System.out.println(theURL + " not accessible");
+			return;
+		}
+		seen.put(url, Boolean.TRUE);
+		links.add(new Link(null, url));
+		schedule(url, 0);
+	}
+
+	// ------ loading (threads of the pool) ------
+	void schedule(final String theURL, final int theDepth) {
+		if (scheduled.incrementAndGet() > maxPages || pool.isShutdown()) {
+			scheduled.decrementAndGet();
+			return;
+		}
+		pending.incrementAndGet();
+		try {
+			pool.execute(new Runnable() {
+				public void run() {
+					try {
+						load(theURL, theDepth);
+					} finally {
+						pending.decrementAndGet();
+					}
+				}
+			});
+		} catch (Exception e) {
+			// pool was stopped in the meantime
+			pending.decrementAndGet();
+		}
+	}
+
+	void load(final String theURL, final int theDepth) {
+		final LinkedHashSet<String> found = new LinkedHashSet<String>();
+		Reader reader = null;
+		try {
+			final URL base = new URL(theURL);
+			URLConnection connection = base.openConnection();
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			reader = new InputStreamReader(connection.getInputStream(), "UTF-8");
+
+			HTMLEditorKit.ParserCallback callback = 
+					new HTMLEditorKit.ParserCallback() {
+				public void handleStartTag(HTML.Tag theTag,
+						MutableAttributeSet theAttributes, int thePos) {
+					handleSimpleTag(theTag, theAttributes, thePos);
+				}
+
+				public void handleSimpleTag(HTML.Tag theTag,
+						MutableAttributeSet theAttributes, int thePos) {
+					if (theTag != HTML.Tag.A)
+						return;
+					Object href = theAttributes.getAttribute(HTML.Attribute.HREF);
+					if (href == null)
+						return;
+					String url = normalize(base, href.toString());
+					if (url != null && !url.equals(theURL) && found.add(url)) {
+						found(theURL, url, theDepth);
+					}
+				}
+			};
+			new ParserDelegator().parse(reader, callback, true);
+			loaded.incrementAndGet();
+		} catch (Exception e) {
+			failed.incrementAndGet();
+			System.out.println(theURL + " not accessible");
+		} finally {
+			try {
+				if (reader != null)
+					reader.close();
+			} catch (Exception e) {
+			}
+		}
+	}
+
+	// called by the loading threads for every new link on a page
+	void found(String theFrom, String theTo, int theDepth) {
+		links.add(new Link(theFrom, theTo));
+		// only the first thread that finds an URL loads it
+		if (seen.putIfAbsent(theTo, Boolean.TRUE) == null
+				&& theDepth < maxDepth && follow(theTo)) {
+			schedule(theTo, theDepth + 1);
+		}
+	}
+
+	boolean follow(String theURL) {
+		if (!sameHost)
+			return true;
+		try {
+			String host = new URL(theURL).getHost();
+			return host.equalsIgnoreCase(start.getHost());
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Resolves a link relative to the page it was found on and removes the
+	 * fragment (#...).
+	 * 
+	 * @return The absolute URL or null, if the link can't be loaded (mailto,
+	 *         javascript, etc.)
+	 */
+	static String normalize(URL theBase, String theLink) {
+		try {
+			URL url = theBase == null ? new URL(theLink.trim()) : new URL(
+					theBase, theLink.trim());
+			String protocol = url.getProtocol();
+			if (!protocol.equals("http") && !protocol.equals("https")
+					&& !protocol.equals("file"))
+				return null;
+			String s = url.toExternalForm();
+			int hash = s.indexOf('#');
+			if (hash >= 0)
+				s = s.substring(0, hash);
+			return s;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	// ------ update (animation thread) ------
+	/**
+	 * Adds the links found since the last call to the graph. Call this once
+	 * per frame.
+	 * 
+	 * @return Number of new nodes
+	 */
+	public int update() {
+		int newNodes = 0;
+		while (newNodes < maxNodesPerFrame) {
+			Link link = links.poll();
+			if (link == null)
+				break;
+
+			Node from = link.from == null ? null : nodesByURL.get(link.from);
+			Node to = nodesByURL.get(link.to);
+			if (to == null) {
+				to = addNode(link.to, from);
+				newNodes++;
+			}
+			if (from != null) {
+				addSpring(from, to);
+			}
+		}
+		return newNodes;
+	}
+
+	Node addNode(String theURL, Node theParent) {
+		Node node = new Node();
+		node.copyParameters(template);
+		node.id = theURL;
+		if (theParent != null) {
+			// start close to the page that links to it
+			float angle = random.nextFloat() * (float) Math.PI * 2;
+			node.x = theParent.x + (float) Math.cos(angle) * springLength / 2;
+			node.y = theParent.y + (float) Math.sin(angle) * springLength / 2;
+			node.z = theParent.z;
+		} else {
+			node.x = template.x;
+			node.y = template.y;
+			node.z = template.z;
+		}
+
+		if (nodeCount + 1 >= nodes.length) {
+			Node[] larger = new Node[nodes.length * 2];
+			System.arraycopy(nodes, 0, larger, 0, nodeCount);
+			nodes = larger;
+		}
+		nodes[nodeCount++] = node;
+		nodesByURL.put(theURL, node);
+		return node;
+	}
+
+	void addSpring(Node theFrom, Node theTo) {
+		if (springCount + 1 >= springs.length) {
+			Spring[] larger = new Spring[springs.length * 2];
+			System.arraycopy(springs, 0, larger, 0, springCount);
+			springs = larger;
+		}
+		springs[springCount++] = new Spring(theFrom, theTo, springLength,
+				stiffness, damping);
+	}
+
+	/**
+	 * Stops loading. Pages that are being loaded right now are finished,
+	 * their links are still added by update().
+	 */
+	public void stop() {
+		pool.shutdown();
+	}
+
+	/**
+	 * @return true if all pages are loaded (or the crawler was stopped) and
+	 *         all links were added to the graph
+	 */
+	public boolean isDone() {
+		return pending.get() == 0 && links.isEmpty();
+	}
+
+	// ------ getters and setters ------
+	/**
+	 * @return All nodes of the graph, filled up with null at the end
+	 */
+	public Node[] getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return All springs of the graph, filled up with null at the end
+	 */
+	public Spring[] getSprings() {
+		return springs;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getSpringCount() {
+		return springCount;
+	}
+
+	/**
+	 * @param theURL
+	 *            URL of a page
+	 * @return The node of this page or null
+	 */
+	public Node getNode(String theURL) {
+		return nodesByURL.get(theURL);
+	}
+
+	/**
+	 * @return Number of pages that were loaded successfully
+	 */
+	public int getLoadedCount() {
+		return loaded.get();
+	}
+
+	/**
+	 * @return Number of pages that could not be loaded
+	 */
+	public int getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return Number of pages that are waiting or being loaded
+	 */
+	public int getPendingCount() {
+		return pending.get();
+	}
+
+	/**
+	 * @return Number of links that were found but are not in the graph yet
+	 */
+	public int getQueueSize() {
+		return links.size();
+	}
+
+	public Node getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(Node theTemplate) {
+		this.template = theTemplate;
+	}
+
+	/**
+	 * Sets the seed of the random generator that places new nodes.
+	 */
+	public void setSeed(long theSeed) {
+		random.setSeed(theSeed);
+	}
+
+	public RandomSource getRandomSource() {
+		return random;
+	}
+
+	public void setRandomSource(RandomSource theRandomSource) {
+		this.random = theRandomSource;
+	}
+
+}
@@ -21,18 +21,32 @@
 
 package generativedesign;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
 import processing.core.PApplet;
+import processing.core.PShape;
 import processing.core.PVector;
 
 /**
  * Basic class for calculating and drawing a mesh. A mesh is a two dimensional
  * grid (u/v-coordinates) which is deformed by using mathematical formulas
  * resulting in three dimensional surfaces.
+ * <p>
+ * The built-in forms are not calculated point by point with their
+ * calculateXxx() functions, but with terms that are calculated once per row
+ * and column. If a subclass overrides one of these functions (e.g.
+ * calculateSphere()), that form is calculated point by point with the
+ * overridden function instead, and its points are not cached.
  */
 public class Mesh extends PApplet {
 
 	private PApplet parent;
 
+	// minimum number of points calculated by one parallel task
+	final static int CHUNK_SIZE = 2048;
+
 	// ------ constants ------
 
 	public final static int PLANE = CUSTOM;
@@ -83,7 +97,94 @@ public class Mesh extends PApplet {
 
 	public float meshDistortion = 0;
 
-	PVector[][] points;
+	/**
+	 * Calculate the points on several cores (default = true). If you override
+	 * calculatePoints() with code that is not thread-safe (e.g. it changes
+	 * variables of the sketch or uses random()), set this to false.
+	 */
+	public boolean parallel = true;
+
+	/**
+	 * Build a PShape of the mesh once and draw it every frame, instead of
+	 * drawing every face again (default = false). The shape is built again
+	 * when the points, colors, alpha, distortion or draw mode change. Random
+	 * colors and distortion are chosen only when the shape is built.
+	 */
+	public boolean retained = false;
+
+	/**
+	 * Choose the level of detail automatically from the size of the mesh on
+	 * the screen (default = false). Level 0 draws all points, every further
+	 * level only every second column and row of the level before. Needs a
+	 * 3D renderer.
+	 */
+	public boolean lod = false;
+
+	/**
+	 * Number of levels of detail (default = 4).
+	 */
+	public int lodLevels = 4;
+
+	/**
+	 * Size of the faces on the screen in pixels that the automatic level of
+	 * detail aims at (default = 8). Larger values give coarser levels.
+	 */
+	public float lodPixels = 8;
+
+	/**
+	 * How much smaller the mesh must get on the screen, before a coarser
+	 * level is chosen (default = 0.25, i.e. 25%). This avoids switching back
+	 * and forth when the size is close to the limit between two levels.
+	 */
+	public float lodHysteresis = 0.25f;
+
+	/**
+	 * Choose the columns and rows of the mesh by the shape of the form
+	 * (default = false). Columns and rows are only used where the surface
+	 * bends, so flat parts get much fewer faces. uCount and vCount are the
+	 * maximum resolution in this mode. As all points still lie on a grid,
+	 * there are no cracks between the faces.
+	 */
+	public boolean adaptive = false;
+
+	/**
+	 * The largest distance between the surface and the faces in adaptive mode
+	 * (default = 0.002). Smaller values give more columns and rows.
+	 */
+	public float adaptiveTolerance = 0.002f;
+
+	// x, y and z of all points, row after row
+	float[] vertices = new float[0];
+	// number of points in u and v direction at the last update
+	int columns = 0, rows = 0;
+	// u and v of the columns and rows at the last update
+	float[] uValues = new float[0];
+	float[] vValues = new float[0];
+	// increased whenever the points change
+	int version = 0;
+
+	/**
+	 * Number of parameter sets whose points are kept, so switching back to
+	 * them doesn't need any calculation (default = 4). Every entry needs as
+	 * much memory as the points of the mesh.
+	 */
+	public int cacheSize = 4;
+
+	// parameters of the last update and the cached points, most recently used
+	// first. every entry holds the parameters and a copy of the points.
+	float[] builtKey;
+	LinkedList<float[][]> cache = new LinkedList<float[][]>();
+
+	// retained mode: the shapes of the levels, the shape that gets vertices
+	// while building and the state the shapes were built with
+	PShape[] shapes;
+	PShape current;
+	int retainedVersion;
+	float[] retainedKey;
+	RandomSource randomSource = new RandomSource();
+
+	// custom form given as formulas, see setFormula()
+	MeshFormula formula;
 
 	// ------ constructors ------
 
@@ -204,93 +305,800 @@ public class Mesh extends PApplet {
 	/**
 	 * Updates the points of the mesh. This is automatically called when
 	 * creating the mesh. It has to be called manually every time that one of
-	 * the parameters uCount, vCount, uMin, uMax, vMin or vMax has changed.
+	 * the parameters form, uCount, vCount, uMin, uMax, vMin, vMax or params
+	 * has changed. For the built-in forms, nothing is calculated if none of
+	 * them has changed since the last update, and the points of the last few
+	 * parameter sets are taken from a cache. Custom forms are always
+	 * calculated.
 	 */
 	public void update() {
-		points = new PVector[vCount + 1][uCount + 1];
-
-		float u, v;
-		for (int iv = 0; iv <= vCount; iv++) {
-			for (int iu = 0; iu <= uCount; iu++) {
-				u = map(iu, 0, uCount, uMin, uMax);
-				v = map(iv, 0, vCount, vMin, vMax);
-
-				switch (form) {
-				case CUSTOM:
-					points[iv][iu] = calculatePoints(u, v);
-					break;
-				case TUBE:
-					points[iv][iu] = calculateTube(u, v);
-					break;
-				case SPHERE:
-					points[iv][iu] = calculateSphere(u, v);
-					break;
-				case TORUS:
-					points[iv][iu] = calculateTorus(u, v);
-					break;
-				case PARABOLOID:
-					points[iv][iu] = calculateParaboloid(u, v);
-					break;
-				case STEINBACHSCREW:
-					points[iv][iu] = calculateSteinbachScrew(u, v);
-					break;
-				case SINE:
-					points[iv][iu] = calculateSine(u, v);
-					break;
-				case FIGURE8TORUS:
-					points[iv][iu] = calculateFigure8Torus(u, v);
-					break;
-				case ELLIPTICTORUS:
-					points[iv][iu] = calculateEllipticTorus(u, v);
-					break;
-				case CORKSCREW:
-					points[iv][iu] = calculateCorkscrew(u, v);
-					break;
-				case BOHEMIANDOME:
-					points[iv][iu] = calculateBohemianDome(u, v);
-					break;
-				case BOW:
-					points[iv][iu] = calculateBow(u, v);
-					break;
-				case MAEDERSOWL:
-					points[iv][iu] = calculateMaedersOwl(u, v);
-					break;
-				case ASTROIDALELLIPSOID:
-					points[iv][iu] = calculateAstroidalEllipsoid(u, v);
-					break;
-				case TRIAXIALTRITORUS:
-					points[iv][iu] = calculateTriaxialTritorus(u, v);
-					break;
-				case LIMPETTORUS:
-					points[iv][iu] = calculateLimpetTorus(u, v);
-					break;
-				case HORN:
-					points[iv][iu] = calculateHorn(u, v);
-					break;
-				case SHELL:
-					points[iv][iu] = calculateShell(u, v);
-					break;
-				case KIDNEY:
-					points[iv][iu] = calculateKidney(u, v);
-					break;
-				case LEMNISCAPE:
-					points[iv][iu] = calculateLemniscape(u, v);
-					break;
-				case TRIANGULOID:
-					points[iv][iu] = calculateTrianguloid(u, v);
-					break;
-				case SUPERFORMULA:
-					points[iv][iu] = calculateSuperformula(u, v);
-					break;
-
-				default:
-					points[iv][iu] = calculatePoints(u, v);
-					break;
+		boolean builtIn = usesBuiltIn(form);
+		if (builtIn && geometryMatches(builtKey))
+			return;
+		float[] key = builtIn ? geometryKey() : null;
+
+		version++;
+		builtKey = key;
+		if (key != null && restoreFromCache(key))
+			return;
+
+		if (adaptive) {
+			uValues = adaptiveValues(true);
+			vValues = adaptiveValues(false);
+		} else {
+			uValues = uniformValues(uCount, uMin, uMax);
+			vValues = uniformValues(vCount, vMin, vMax);
+		}
+		columns = uValues.length;
+		rows = vValues.length;
+		if (vertices.length != columns * rows * 3) {
+			vertices = new float[columns * rows * 3];
+		}
+
+		if (builtIn)
+			prepareTerms();
+
+		// every task calculates some rows with a few thousand points in total
+		int chunkRows = Math.max(CHUNK_SIZE / columns, 1);
+		updateLoop.execute(0, rows, chunkRows, parallel);
+
+		if (key != null)
+			storeInCache(key);
+	}
+
+	/**
+	 * @return true if form, counts, ranges or params have been changed since
+	 *         the last update (always true for custom forms)
+	 */
+	public boolean isChanged() {
+		return !usesBuiltIn(form) || !geometryMatches(builtKey);
+	}
+
+	static boolean isBuiltIn(int theForm) {
+		return theForm >= TUBE && theForm <= SUPERFORMULA;
+	}
+
+	// ------ overridden form functions ------
+
+	// functions of the built-in forms, by form
+	final static String[] FUNCTIONS = { null, "calculateTube",
+			"calculateSphere", "calculateTorus", "calculateParaboloid",
+			"calculateSteinbachScrew", "calculateSine",
+			"calculateFigure8Torus", "calculateEllipticTorus",
+			"calculateCorkscrew", "calculateBohemianDome", "calculateBow",
+			"calculateMaedersOwl", "calculateAstroidalEllipsoid",
+			"calculateTriaxialTritorus", "calculateLimpetTorus",
+			"calculateHorn", "calculateShell", "calculateKidney",
+			"calculateLemniscape", "calculateTrianguloid",
+			"calculateSuperformula" };
+
+	// how a subclass has overridden the function of a form
+	final static int NOT_OVERRIDDEN = 0, ARRAY_OVERRIDDEN = 1,
+			PVECTOR_OVERRIDDEN = 2;
+	int[] overrides;
+
+	// looks once for overridden functions of the built-in forms
+	int override(int theForm) {
+		if (!isBuiltIn(theForm))
+			return NOT_OVERRIDDEN;
+		if (overrides == null) {
+			int[] o = new int[FUNCTIONS.length];
+			if (getClass() != Mesh.class) {
+				for (int f = TUBE; f <= SUPERFORMULA; f++) {
+					if (isOverridden(FUNCTIONS[f], float.class, float.class))
+						o[f] = PVECTOR_OVERRIDDEN;
+					else if (isOverridden(FUNCTIONS[f], float.class,
+							float.class, float[].class, int.class))
+						o[f] = ARRAY_OVERRIDDEN;
 				}
 			}
+			overrides = o;
+		}
+		return overrides[theForm];
+	}
+
+	boolean isOverridden(String theName, Class<?>... theTypes) {
+		try {
+			return getClass().getMethod(theName, theTypes)
+					.getDeclaringClass() != Mesh.class;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	// true if the points of the form can be calculated from separable terms
+	boolean usesBuiltIn(int theForm) {
+		return isBuiltIn(theForm) && override(theForm) == NOT_OVERRIDDEN;
+	}
+
+	// like calculatePoint(), but uses an overridden PVector function
+	void calculateFormPoint(int theForm, float u, float v, float[] theResult,
+			int theIndex) {
+		if (override(theForm) != PVECTOR_OVERRIDDEN) {
+			calculatePoint(theForm, u, v, theResult, theIndex);
+			return;
+		}
+		PVector p;
+		switch (theForm) {
+		case TUBE: p = calculateTube(u, v); break;
+		case SPHERE: p = calculateSphere(u, v); break;
+		case TORUS: p = calculateTorus(u, v); break;
+		case PARABOLOID: p = calculateParaboloid(u, v); break;
+		case STEINBACHSCREW: p = calculateSteinbachScrew(u, v); break;
+		case SINE: p = calculateSine(u, v); break;
+		case FIGURE8TORUS: p = calculateFigure8Torus(u, v); break;
+		case ELLIPTICTORUS: p = calculateEllipticTorus(u, v); break;
+		case CORKSCREW: p = calculateCorkscrew(u, v); break;
+		case BOHEMIANDOME: p = calculateBohemianDome(u, v); break;
+		case BOW: p = calculateBow(u, v); break;
+		case MAEDERSOWL: p = calculateMaedersOwl(u, v); break;
+		case ASTROIDALELLIPSOID: p = calculateAstroidalEllipsoid(u, v); break;
+		case TRIAXIALTRITORUS: p = calculateTriaxialTritorus(u, v); break;
+		case LIMPETTORUS: p = calculateLimpetTorus(u, v); break;
+		case HORN: p = calculateHorn(u, v); break;
+		case SHELL: p = calculateShell(u, v); break;
+		case KIDNEY: p = calculateKidney(u, v); break;
+		case LEMNISCAPE: p = calculateLemniscape(u, v); break;
+		case TRIANGULOID: p = calculateTrianguloid(u, v); break;
+		default: p = calculateSuperformula(u, v); break;
+		}
+		theResult[theIndex] = p.x;
+		theResult[theIndex + 1] = p.y;
+		theResult[theIndex + 2] = p.z;
+	}
+
+	// everything the points of a built-in form depend on
+	float[] geometryKey() {
+		float[] key = new float[9 + params.length];
+		key[0] = form;
+		key[1] = uMin;
+		key[2] = uMax;
+		key[3] = uCount;
+		key[4] = vMin;
+		key[5] = vMax;
+		key[6] = vCount;
+		key[7] = adaptive ? adaptiveTolerance : 0;
+		key[8] = adaptive ? 1 : 0;
+		System.arraycopy(params, 0, key, 9, params.length);
+		return key;
+	}
+
+	// compares the current parameters to a key without creating a new one
+	boolean geometryMatches(float[] theKey) {
+		if (theKey == null || theKey.length != 9 + params.length)
+			return false;
+		if (!same(theKey[0], form) || !same(theKey[1], uMin)
+				|| !same(theKey[2], uMax) || !same(theKey[3], uCount)
+				|| !same(theKey[4], vMin) || !same(theKey[5], vMax)
+				|| !same(theKey[6], vCount)
+				|| !same(theKey[7], adaptive ? adaptiveTolerance : 0)
+				|| !same(theKey[8], adaptive ? 1 : 0))
+			return false;
+		for (int i = 0; i < params.length; i++) {
+			if (!same(theKey[9 + i], params[i]))
+				return false;
+		}
+		return true;
+	}
+
+	// same comparison as Arrays.equals()
+	static boolean same(float a, float b) {
+		return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+	}
+
+	// ------ cache ------
+
+	// every entry holds the key, the points and the u and v values. the
+	// arrays of u and v values are never changed, so they can be shared.
+	boolean restoreFromCache(float[] theKey) {
+		for (Iterator<float[][]> i = cache.iterator(); i.hasNext();) {
+			float[][] entry = i.next();
+			if (Arrays.equals(entry[0], theKey)) {
+				uValues = entry[2];
+				vValues = entry[3];
+				columns = uValues.length;
+				rows = vValues.length;
+				if (vertices.length != entry[1].length)
+					vertices = new float[entry[1].length];
+				System.arraycopy(entry[1], 0, vertices, 0, vertices.length);
+				// most recently used entries are at the front
+				i.remove();
+				cache.addFirst(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void storeInCache(float[] theKey) {
+		if (cacheSize <= 0)
+			return;
+		float[][] entry;
+		if (cache.size() >= cacheSize) {
+			// reuse the least recently used entry
+			entry = cache.removeLast();
+			while (cache.size() >= cacheSize)
+				cache.removeLast();
+			if (entry[1].length != vertices.length)
+				entry[1] = new float[vertices.length];
+		} else {
+			entry = new float[][] { null, new float[vertices.length], null,
+					null };
+		}
+		entry[0] = theKey;
+		entry[2] = uValues;
+		entry[3] = vValues;
+		System.arraycopy(vertices, 0, entry[1], 0, vertices.length);
+		cache.addFirst(entry);
+	}
+
+	/**
+	 * Removes all points from the cache.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	ParallelLoop updateLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			if (usesBuiltIn(form)) {
+				for (int iv = theStart; iv < theEnd; iv++) {
+					for (int iu = 0; iu < columns; iu++) {
+						combineTerms(form, columnTerms, iu * TERMS, rowTerms, iv
+								* TERMS, vertices, index(iu, iv));
+					}
+				}
+				return;
+			}
+			for (int iv = theStart; iv < theEnd; iv++) {
+				for (int iu = 0; iu < columns; iu++) {
+					calculateFormPoint(form, uValues[iu], vValues[iv],
+							vertices, index(iu, iv));
+				}
+			}
+		}
+	};
+
+	static float[] uniformValues(int theCount, float theMin, float theMax) {
+		float[] values = new float[theCount + 1];
+		for (int i = 0; i <= theCount; i++) {
+			values[i] = map(i, 0, theCount, theMin, theMax);
+		}
+		return values;
+	}
+
+	// ------ adaptive columns and rows ------
+
+	// number of columns and rows that are always used in adaptive mode and
+	// number of points along which a column or row is checked
+	final static int ADAPTIVE_SEGMENTS = 8;
+	final static int ADAPTIVE_PROBES = 17;
+
+	// chooses columns (theU == true) or rows out of the uCount + 1 columns or
+	// vCount + 1 rows of the full grid. an interval is split in the middle as
+	// long as the point in the middle is further than adaptiveTolerance away
+	// from the line between the ends, measured along a few rows (or columns)
+	// across the whole mesh.
+	float[] adaptiveValues(boolean theU) {
+		int count = theU ? uCount : vCount;
+		float min = theU ? uMin : vMin;
+		float max = theU ? uMax : vMax;
+		float[] probes = uniformValues(ADAPTIVE_PROBES - 1, theU ? vMin
+				: uMin, theU ? vMax : uMax);
+
+		boolean[] used = new boolean[count + 1];
+		int segments = Math.min(ADAPTIVE_SEGMENTS, count);
+		int i0 = 0;
+		float[] p0 = probe(theU, map(0, 0, count, min, max), probes);
+		used[0] = true;
+		for (int k = 1; k <= segments; k++) {
+			int i1 = k * count / segments;
+			float[] p1 = probe(theU, map(i1, 0, count, min, max), probes);
+			used[i1] = true;
+			refine(theU, count, min, max, probes, i0, p0, i1, p1, used);
+			i0 = i1;
+			p0 = p1;
+		}
+
+		int n = 0;
+		for (int i = 0; i <= count; i++) {
+			if (used[i])
+				n++;
+		}
+		float[] values = new float[n];
+		n = 0;
+		for (int i = 0; i <= count; i++) {
+			if (used[i])
+				values[n++] = map(i, 0, count, min, max);
+		}
+		return values;
+	}
+
+	void refine(boolean theU, int theCount, float theMin, float theMax,
+			float[] theProbes, int i0, float[] p0, int i1, float[] p1,
+			boolean[] theUsed) {
+		if (i1 - i0 < 2)
+			return;
+		int im = (i0 + i1) / 2;
+		float[] pm = probe(theU, map(im, 0, theCount, theMin, theMax),
+				theProbes);
+		float t = (im - i0) / (float) (i1 - i0);
+		float error = 0;
+		for (int i = 0; i < pm.length; i++) {
+			float d = pm[i] - (p0[i] + (p1[i] - p0[i]) * t);
+			error = Math.max(error, Math.abs(d));
+		}
+		// nan or infinite points are refined to the full resolution
+		if (!(error <= adaptiveTolerance)) {
+			theUsed[im] = true;
+			refine(theU, theCount, theMin, theMax, theProbes, i0, p0, im, pm,
+					theUsed);
+			refine(theU, theCount, theMin, theMax, theProbes, im, pm, i1, p1,
+					theUsed);
+		}
+	}
+
+	// points of a column (theU == true) or row at the probe positions
+	float[] probe(boolean theU, float theValue, float[] theProbes) {
+		float[] p = new float[theProbes.length * 3];
+		for (int i = 0; i < theProbes.length; i++) {
+			if (theU)
+				calculateFormPoint(form, theValue, theProbes[i], p, i * 3);
+			else
+				calculateFormPoint(form, theProbes[i], theValue, p, i * 3);
+		}
+		return p;
+	}
+
+	// calculates a point of one of the forms and writes it into theResult
+	void calculatePoint(int theForm, float u, float v, float[] theResult,
+			int theIndex) {
+		switch (theForm) {
+		case CUSTOM:
+			calculatePoints(u, v, theResult, theIndex);
+			break;
+		case TUBE:
+			calculateTube(u, v, theResult, theIndex);
+			break;
+		case SPHERE:
+			calculateSphere(u, v, theResult, theIndex);
+			break;
+		case TORUS:
+			calculateTorus(u, v, theResult, theIndex);
+			break;
+		case PARABOLOID:
+			calculateParaboloid(u, v, theResult, theIndex);
+			break;
+		case STEINBACHSCREW:
+			calculateSteinbachScrew(u, v, theResult, theIndex);
+			break;
+		case SINE:
+			calculateSine(u, v, theResult, theIndex);
+			break;
+		case FIGURE8TORUS:
+			calculateFigure8Torus(u, v, theResult, theIndex);
+			break;
+		case ELLIPTICTORUS:
+			calculateEllipticTorus(u, v, theResult, theIndex);
+			break;
+		case CORKSCREW:
+			calculateCorkscrew(u, v, theResult, theIndex);
+			break;
+		case BOHEMIANDOME:
+			calculateBohemianDome(u, v, theResult, theIndex);
+			break;
+		case BOW:
+			calculateBow(u, v, theResult, theIndex);
+			break;
+		case MAEDERSOWL:
+			calculateMaedersOwl(u, v, theResult, theIndex);
+			break;
+		case ASTROIDALELLIPSOID:
+			calculateAstroidalEllipsoid(u, v, theResult, theIndex);
+			break;
+		case TRIAXIALTRITORUS:
+			calculateTriaxialTritorus(u, v, theResult, theIndex);
+			break;
+		case LIMPETTORUS:
+			calculateLimpetTorus(u, v, theResult, theIndex);
+			break;
+		case HORN:
+			calculateHorn(u, v, theResult, theIndex);
+			break;
+		case SHELL:
+			calculateShell(u, v, theResult, theIndex);
+			break;
+		case KIDNEY:
+			calculateKidney(u, v, theResult, theIndex);
+			break;
+		case LEMNISCAPE:
+			calculateLemniscape(u, v, theResult, theIndex);
+			break;
+		case TRIANGULOID:
+			calculateTrianguloid(u, v, theResult, theIndex);
+			break;
+		case SUPERFORMULA:
+			calculateSuperformula(u, v, theResult, theIndex);
+			break;
+
+		default:
+			calculatePoints(u, v, theResult, theIndex);
+			break;
+		}
+	}
+
+	PVector calculatePoint(int theForm, float u, float v) {
+		float[] p = new float[3];
+		calculatePoint(theForm, u, v, p, 0);
+		return new PVector(p[0], p[1], p[2]);
+	}
+
+	// ------ separable terms ------
+
+	// most built-in forms are made of terms that depend only on u or only on
+	// v. these terms are calculated once per column and once per row, and are
+	// combined for every point with the same operations as in the
+	// calculateXxx() functions, so the points are exactly the same.
+
+	// number of terms per column and per row
+	final static int TERMS = 6;
+
+	float[] columnTerms = new float[0];
+	float[] rowTerms = new float[0];
+
+	void prepareTerms() {
+		if (columnTerms.length != columns * TERMS)
+			columnTerms = new float[columns * TERMS];
+		if (rowTerms.length != rows * TERMS)
+			rowTerms = new float[rows * TERMS];
+		for (int iu = 0; iu < columns; iu++) {
+			calculateColumnTerms(form, uValues[iu], columnTerms, iu * TERMS);
+		}
+		for (int iv = 0; iv < rows; iv++) {
+			calculateRowTerms(form, vValues[iv], rowTerms, iv * TERMS);
+		}
+	}
+
+	void calculateColumnTerms(int theForm, float u, float[] c, int i) {
+		switch (theForm) {
+		case TUBE:
+		case SPHERE:
+		case TORUS:
+		case PARABOLOID:
+			c[i] = sin(u);
+			c[i + 1] = cos(u);
+			break;
+		case STEINBACHSCREW:
+			c[i] = u;
+			c[i + 1] = cos(u);
+			break;
+		case SINE:
+			c[i] = 2 * sin(u);
+			c[i + 1] = u;
+			break;
+		case FIGURE8TORUS:
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			c[i + 2] = 1.5f * cos(u);
+			c[i + 3] = 1.5f * sin(u);
+			break;
+		case ELLIPTICTORUS:
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			break;
+		case CORKSCREW:
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			c[i + 2] = params[0] * u;
+			break;
+		case BOHEMIANDOME:
+			c[i] = 2 * cos(u);
+			c[i + 1] = 2 * sin(u);
+			break;
+		case BOW:
+			u /= TWO_PI;
+			c[i] = 2 + params[0] * sin(TWO_PI * u);
+			c[i + 1] = params[0] * cos(TWO_PI * u);
+			break;
+		case MAEDERSOWL:
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			c[i + 2] = cos(2 * u);
+			c[i + 3] = sin(2 * u);
+			c[i + 4] = cos(3 * u / 2);
+			break;
+		case ASTROIDALELLIPSOID:
+			u /= 2;
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			break;
+		case TRIAXIALTRITORUS:
+			c[i] = 1.5f * sin(u);
+			c[i + 1] = 1.5f * sin(u + TWO_PI / 3 * params[0]);
+			c[i + 2] = 1.5f * sin(u + 2 * TWO_PI / 3 * params[0]);
+			break;
+		case LIMPETTORUS:
+			c[i] = 1.5f * params[0] * cos(u);
+			c[i + 1] = 1.5f * params[0] * sin(u);
+			break;
+		case HORN:
+			u /= PI;
+			c[i] = u;
+			c[i + 1] = sin(TWO_PI * u);
+			c[i + 2] = cos(TWO_PI * u);
+			c[i + 3] = 2 * u;
+			break;
+		case SHELL:
+			c[i] = params[1] * (1 - (u / TWO_PI)) * cos(params[0] * u);
+			c[i + 1] = params[3] * cos(params[0] * u);
+			c[i + 2] = params[1] * (1 - (u / TWO_PI)) * sin(params[0] * u);
+			c[i + 3] = params[3] * sin(params[0] * u);
+			c[i + 4] = params[2] * (u / TWO_PI);
+			c[i + 5] = params[0] * (1 - (u / TWO_PI));
+			break;
+		case KIDNEY:
+			u /= 2;
+			c[i] = cos(u);
+			c[i + 1] = sin(u);
+			break;
+		case LEMNISCAPE:
+			u /= 2;
+			c[i] = sqrt(abs(sin(2 * params[0] * u)));
+			c[i + 1] = cos(u);
+			c[i + 2] = sin(u);
+			break;
+		case TRIANGULOID:
+			c[i] = sin(3 * u) * 2;
+			c[i + 1] = (sin(u) + 2 * params[0] * sin(2 * u)) * 2;
+			c[i + 2] = cos(u) - 2 * params[0] * cos(2 * u);
+			break;
+		case SUPERFORMULA:
+			float a = params[0];
+			float b = params[1];
+			float m = (params[2]);
+			float n1 = (params[3]);
+			float n2 = (params[4]);
+			float n3 = (params[5]);
+			float r1 = pow(pow(abs(cos(m * u / 4) / a), n2)
+					+ pow(abs(sin(m * u / 4) / b), n3), -1 / n1);
+			c[i] = r1 * sin(u);
+			c[i + 1] = r1 * cos(u);
+			break;
+		}
+	}
+
+	void calculateRowTerms(int theForm, float v, float[] r, int i) {
+		switch (theForm) {
+		case TUBE:
+			r[i] = params[0] * v;
+			break;
+		case SPHERE:
+			v /= 2;
+			v += HALF_PI;
+			r[i] = sin(v);
+			r[i + 1] = 2 * (params[0] * cos(v));
+			break;
+		case TORUS:
+			r[i] = params[1] + 1 + params[0] * cos(v);
+			r[i + 1] = params[0] * sin(v);
+			break;
+		case PARABOLOID:
+			float pd = params[0];
+			if (pd == 0) {
+				pd = 0.0001f;
+			}
+			r[i] = power((v / pd), 0.5f);
+			r[i + 1] = v;
+			break;
+		case STEINBACHSCREW:
+			r[i] = cos(v);
+			r[i + 1] = sin(params[0] * v);
+			r[i + 2] = v;
+			break;
+		case SINE:
+			r[i] = 2 * sin(params[0] * v);
+			r[i + 1] = v;
+			break;
+		case FIGURE8TORUS:
+			r[i] = sin(v);
+			r[i + 1] = sin(2 * v);
+			break;
+		case ELLIPTICTORUS:
+			r[i] = 1.5f * (params[0] + cos(v));
+			r[i + 1] = 1.5f * sin(v) + cos(v);
+			break;
+		case CORKSCREW:
+			r[i] = cos(v);
+			r[i + 1] = sin(v);
+			break;
+		case BOHEMIANDOME:
+			r[i] = params[0] * cos(v);
+			r[i + 1] = 2 * sin(v);
+			break;
+		case BOW:
+			v /= TWO_PI;
+			r[i] = sin(2 * TWO_PI * v);
+			r[i + 1] = cos(2 * TWO_PI * v);
+			r[i + 2] = 3 * cos(TWO_PI * v);
+			break;
+		case MAEDERSOWL:
+			r[i] = v;
+			r[i + 1] = 0.5f * params[0] * power(v, 2);
+			r[i + 2] = 4 * power(v, 1.5f);
+			break;
+		case ASTROIDALELLIPSOID:
+			r[i] = cos(v);
+			r[i + 1] = 3 * power(sin(v), 3 * params[0]);
+			break;
+		case TRIAXIALTRITORUS:
+			r[i] = 1 + cos(v);
+			r[i + 1] = 1 + cos(v + TWO_PI / 3 * params[0]);
+			r[i + 2] = 1 + cos(v + 2 * TWO_PI / 3 * params[0]);
+			break;
+		case LIMPETTORUS:
+			r[i] = sqrt(2) + sin(v);
+			r[i + 1] = 1.5f * 1 / (sqrt(2) + cos(v));
+			break;
+		case HORN:
+			r[i] = cos(v);
+			r[i + 1] = sin(v);
+			break;
+		case SHELL:
+			r[i] = 1 + cos(v);
+			r[i + 1] = sin(v);
+			break;
+		case KIDNEY:
+			r[i] = params[0] * 3 * cos(v) - cos(3 * v);
+			r[i + 1] = 3 * sin(v) - sin(3 * v);
+			break;
+		case LEMNISCAPE:
+			r[i] = cos(v);
+			r[i + 1] = power(tan(v), 2);
+			break;
+		case TRIANGULOID:
+			r[i] = 2 + cos(v);
+			r[i + 1] = 2 + cos(v + TWO_PI);
+			r[i + 2] = (2 + cos(v + TWO_PI / 3)) * 0.25f;
+			break;
+		case SUPERFORMULA:
+			v /= 2;
+			float a = params[6];
+			float b = params[7];
+			float m = (params[8]);
+			float n1 = (params[9]);
+			float n2 = (params[10]);
+			float n3 = (params[11]);
+			float r2 = pow(pow(abs(cos(m * v / 4) / a), n2)
+					+ pow(abs(sin(m * v / 4) / b), n3), -1 / n1);
+			r[i] = r2;
+			r[i + 1] = cos(v);
+			r[i + 2] = 2 * (r2 * sin(v));
+			break;
 		}
 	}
 
+	// calculates a point from the terms of its column (c, i) and its row
+	// (r, j) and writes it into theResult
+	void combineTerms(int theForm, float[] c, int i, float[] r, int j,
+			float[] theResult, int theIndex) {
+		float x = 0, y = 0, z = 0, w;
+		switch (theForm) {
+		case TUBE:
+			x = c[i];
+			y = r[j];
+			z = c[i + 1];
+			break;
+		case SPHERE:
+			x = 2 * (r[j] * c[i]);
+			y = r[j + 1];
+			z = 2 * (r[j] * c[i + 1]);
+			break;
+		case TORUS:
+			x = r[j] * c[i];
+			y = r[j + 1];
+			z = r[j] * c[i + 1];
+			break;
+		case PARABOLOID:
+			x = r[j] * c[i];
+			y = r[j + 1];
+			z = r[j] * c[i + 1];
+			break;
+		case STEINBACHSCREW:
+			x = c[i] * r[j];
+			y = c[i] * r[j + 1];
+			z = r[j + 2] * c[i + 1];
+			break;
+		case SINE:
+			x = c[i];
+			y = r[j];
+			z = 2 * sin(c[i + 1] + r[j + 1]);
+			break;
+		case FIGURE8TORUS:
+			w = params[0] + r[j] * c[i] - r[j + 1] * c[i + 1] / 2;
+			x = c[i + 2] * w;
+			y = c[i + 3] * w;
+			z = c[i + 3] * r[j] + c[i] * r[j + 1] / 2;
+			break;
+		case ELLIPTICTORUS:
+			x = r[j] * c[i];
+			y = r[j] * c[i + 1];
+			z = r[j + 1];
+			break;
+		case CORKSCREW:
+			x = c[i] * r[j];
+			y = c[i + 1] * r[j];
+			z = r[j + 1] + c[i + 2];
+			break;
+		case BOHEMIANDOME:
+			x = c[i];
+			y = c[i + 1] + r[j];
+			z = r[j + 1];
+			break;
+		case BOW:
+			x = c[i] * r[j];
+			y = c[i] * r[j + 1];
+			z = c[i + 1] + r[j + 2];
+			break;
+		case MAEDERSOWL:
+			x = 0.4f * (r[j] * c[i] - r[j + 1] * c[i + 2]);
+			y = 0.4f * (-r[j] * c[i + 1] - r[j + 1] * c[i + 3]);
+			z = 0.4f * (r[j + 2] * c[i + 4] / 3);
+			break;
+		case ASTROIDALELLIPSOID:
+			x = 3 * power(c[i] * r[j], 3 * params[0]);
+			y = 3 * power(c[i + 1] * r[j], 3 * params[0]);
+			z = r[j + 1];
+			break;
+		case TRIAXIALTRITORUS:
+			x = c[i] * r[j];
+			y = c[i + 1] * r[j + 1];
+			z = c[i + 2] * r[j + 2];
+			break;
+		case LIMPETTORUS:
+			x = c[i] / r[j];
+			y = c[i + 1] / r[j];
+			z = r[j + 1];
+			break;
+		case HORN:
+			w = 2 * params[0] + c[i] * r[j];
+			x = w * c[i + 1];
+			y = w * c[i + 2] + c[i + 3];
+			z = c[i] * r[j + 1];
+			break;
+		case SHELL:
+			x = c[i] * r[j] + c[i + 1];
+			y = c[i + 2] * r[j] + c[i + 3];
+			z = c[i + 4] + c[i + 5] * r[j + 1];
+			break;
+		case KIDNEY:
+			x = c[i] * r[j];
+			y = c[i + 1] * r[j];
+			z = r[j + 1];
+			break;
+		case LEMNISCAPE:
+			w = r[j] * c[i];
+			x = w * c[i + 1];
+			y = w * c[i + 2];
+			z = 3 * (power(x, 2) - power(y, 2) + 2 * x * y * r[j + 1]);
+			x *= 3;
+			y *= 3;
+			break;
+		case TRIANGULOID:
+			x = 0.75f * (c[i] / r[j]);
+			y = 0.75f * (c[i + 1] / r[j + 1]);
+			z = 0.75f * (c[i + 2] * r[j] * r[j + 2]);
+			break;
+		case SUPERFORMULA:
+			x = 2 * (c[i] * r[j] * r[j + 1]);
+			y = r[j + 2];
+			z = 2 * (c[i + 1] * r[j] * r[j + 1]);
+			break;
+		}
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
+	}
+
 	// ------ functions for calculating the mesh points ------
 
 	/**
@@ -306,33 +1114,79 @@ public class Mesh extends PApplet {
 		return new PVector(x, y, z);
 	}
 
+	/**
+	 * Calculates a point of a custom form and writes x, y and z into
+	 * theResult, starting at theIndex. By default, this calls
+	 * calculatePoints(u, v). Override this method instead of
+	 * calculatePoints(u, v), if you want to avoid creating a PVector for
+	 * every point. If formulas have been set with setFormula(), they are used
+	 * instead.
+	 */
+	public void calculatePoints(float u, float v, float[] theResult,
+			int theIndex) {
+		if (formula != null) {
+			formula.calculate(u, v, params, theResult, theIndex);
+			return;
+		}
+		PVector p = calculatePoints(u, v);
+		theResult[theIndex] = p.x;
+		theResult[theIndex + 1] = p.y;
+		theResult[theIndex + 2] = p.z;
+	}
+
 	public PVector calculateTube(float u, float v) {
+		return calculatePoint(TUBE, u, v);
+	}
+
+	public void calculateTube(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = (sin(u));
 		float y = params[0] * v;
 		float z = (cos(u));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateSphere(float u, float v) {
+		return calculatePoint(SPHERE, u, v);
+	}
+
+	public void calculateSphere(float u, float v, float[] theResult,
+			int theIndex) {
 		v /= 2;
 		v += HALF_PI;
 		float x = 2 * (sin(v) * sin(u));
 		float y = 2 * (params[0] * cos(v));
 		float z = 2 * (sin(v) * cos(u));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateTorus(float u, float v) {
+		return calculatePoint(TORUS, u, v);
+	}
+
+	public void calculateTorus(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 1 * ((params[1] + 1 + params[0] * cos(v)) * sin(u));
 		float y = 1 * (params[0] * sin(v));
 		float z = 1 * ((params[1] + 1 + params[0] * cos(v)) * cos(u));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateParaboloid(float u, float v) {
+		return calculatePoint(PARABOLOID, u, v);
+	}
+
+	public void calculateParaboloid(float u, float v, float[] theResult,
+			int theIndex) {
 		float pd = params[0];
 		if (pd == 0) {
 			pd = 0.0001f;
@@ -341,117 +1195,208 @@ public class Mesh extends PApplet {
 		float y = v;
 		float z = power((v / pd), 0.5f) * cos(u);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateSteinbachScrew(float u, float v) {
+		return calculatePoint(STEINBACHSCREW, u, v);
+	}
+
+	public void calculateSteinbachScrew(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = u * cos(v);
 		float y = u * sin(params[0] * v);
 		float z = v * cos(u);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateSine(float u, float v) {
+		return calculatePoint(SINE, u, v);
+	}
+
+	public void calculateSine(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 2 * sin(u);
 		float y = 2 * sin(params[0] * v);
 		float z = 2 * sin(u + v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateFigure8Torus(float u, float v) {
+		return calculatePoint(FIGURE8TORUS, u, v);
+	}
+
+	public void calculateFigure8Torus(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 1.5f * cos(u)
 				* (params[0] + sin(v) * cos(u) - sin(2 * v) * sin(u) / 2);
 		float y = 1.5f * sin(u)
 				* (params[0] + sin(v) * cos(u) - sin(2 * v) * sin(u) / 2);
 		float z = 1.5f * sin(u) * sin(v) + cos(u) * sin(2 * v) / 2;
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateEllipticTorus(float u, float v) {
+		return calculatePoint(ELLIPTICTORUS, u, v);
+	}
+
+	public void calculateEllipticTorus(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 1.5f * (params[0] + cos(v)) * cos(u);
 		float y = 1.5f * (params[0] + cos(v)) * sin(u);
 		float z = 1.5f * sin(v) + cos(v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateCorkscrew(float u, float v) {
+		return calculatePoint(CORKSCREW, u, v);
+	}
+
+	public void calculateCorkscrew(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = cos(u) * cos(v);
 		float y = sin(u) * cos(v);
 		float z = sin(v) + params[0] * u;
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateBohemianDome(float u, float v) {
+		return calculatePoint(BOHEMIANDOME, u, v);
+	}
+
+	public void calculateBohemianDome(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 2 * cos(u);
 		float y = 2 * sin(u) + params[0] * cos(v);
 		float z = 2 * sin(v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateBow(float u, float v) {
+		return calculatePoint(BOW, u, v);
+	}
+
+	public void calculateBow(float u, float v, float[] theResult,
+			int theIndex) {
 		u /= TWO_PI;
 		v /= TWO_PI;
 		float x = (2 + params[0] * sin(TWO_PI * u)) * sin(2 * TWO_PI * v);
 		float y = (2 + params[0] * sin(TWO_PI * u)) * cos(2 * TWO_PI * v);
 		float z = params[0] * cos(TWO_PI * u) + 3 * cos(TWO_PI * v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateMaedersOwl(float u, float v) {
+		return calculatePoint(MAEDERSOWL, u, v);
+	}
+
+	public void calculateMaedersOwl(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 0.4f * (v * cos(u) - 0.5f * params[0] * power(v, 2)
 				* cos(2 * u));
 		float y = 0.4f * (-v * sin(u) - 0.5f * params[0] * power(v, 2)
 				* sin(2 * u));
 		float z = 0.4f * (4 * power(v, 1.5f) * cos(3 * u / 2) / 3);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateAstroidalEllipsoid(float u, float v) {
+		return calculatePoint(ASTROIDALELLIPSOID, u, v);
+	}
+
+	public void calculateAstroidalEllipsoid(float u, float v, float[] theResult,
+			int theIndex) {
 		u /= 2;
 		float x = 3 * power(cos(u) * cos(v), 3 * params[0]);
 		float y = 3 * power(sin(u) * cos(v), 3 * params[0]);
 		float z = 3 * power(sin(v), 3 * params[0]);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateTriaxialTritorus(float u, float v) {
+		return calculatePoint(TRIAXIALTRITORUS, u, v);
+	}
+
+	public void calculateTriaxialTritorus(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 1.5f * sin(u) * (1 + cos(v));
 		float y = 1.5f * sin(u + TWO_PI / 3 * params[0])
 				* (1 + cos(v + TWO_PI / 3 * params[0]));
 		float z = 1.5f * sin(u + 2 * TWO_PI / 3 * params[0])
 				* (1 + cos(v + 2 * TWO_PI / 3 * params[0]));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateLimpetTorus(float u, float v) {
+		return calculatePoint(LIMPETTORUS, u, v);
+	}
+
+	public void calculateLimpetTorus(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 1.5f * params[0] * cos(u) / (sqrt(2) + sin(v));
 		float y = 1.5f * params[0] * sin(u) / (sqrt(2) + sin(v));
 		float z = 1.5f * 1 / (sqrt(2) + cos(v));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateHorn(float u, float v) {
+		return calculatePoint(HORN, u, v);
+	}
+
+	public void calculateHorn(float u, float v, float[] theResult,
+			int theIndex) {
 		u /= PI;
 		// v /= PI;
 		float x = (2 * params[0] + u * cos(v)) * sin(TWO_PI * u);
 		float y = (2 * params[0] + u * cos(v)) * cos(TWO_PI * u) + 2 * u;
 		float z = u * sin(v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateShell(float u, float v) {
+		return calculatePoint(SHELL, u, v);
+	}
+
+	public void calculateShell(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = params[1] * (1 - (u / TWO_PI)) * cos(params[0] * u)
 				* (1 + cos(v)) + params[3] * cos(params[0] * u);
 		float y = params[1] * (1 - (u / TWO_PI)) * sin(params[0] * u)
@@ -459,19 +1404,33 @@ public class Mesh extends PApplet {
 		float z = params[2] * (u / TWO_PI) + params[0] * (1 - (u / TWO_PI))
 				* sin(v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateKidney(float u, float v) {
+		return calculatePoint(KIDNEY, u, v);
+	}
+
+	public void calculateKidney(float u, float v, float[] theResult,
+			int theIndex) {
 		u /= 2;
 		float x = cos(u) * (params[0] * 3 * cos(v) - cos(3 * v));
 		float y = sin(u) * (params[0] * 3 * cos(v) - cos(3 * v));
 		float z = 3 * sin(v) - sin(3 * v);
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateLemniscape(float u, float v) {
+		return calculatePoint(LEMNISCAPE, u, v);
+	}
+
+	public void calculateLemniscape(float u, float v, float[] theResult,
+			int theIndex) {
 		u /= 2;
 		float cosvSqrtAbsSin2u = cos(v) * sqrt(abs(sin(2 * params[0] * u)));
 		float x = cosvSqrtAbsSin2u * cos(u);
@@ -479,20 +1438,35 @@ public class Mesh extends PApplet {
 		float z = 3 * (power(x, 2) - power(y, 2) + 2 * x * y * power(tan(v), 2));
 		x *= 3;
 		y *= 3;
-		return new PVector(x, y, z);
+
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateTrianguloid(float u, float v) {
+		return calculatePoint(TRIANGULOID, u, v);
+	}
+
+	public void calculateTrianguloid(float u, float v, float[] theResult,
+			int theIndex) {
 		float x = 0.75f * (sin(3 * u) * 2 / (2 + cos(v)));
 		float y = 0.75f * ((sin(u) + 2 * params[0] * sin(2 * u)) * 2 / (2 + cos(v
 				+ TWO_PI)));
 		float z = 0.75f * ((cos(u) - 2 * params[0] * cos(2 * u)) * (2 + cos(v)) * ((2 + cos(v
 				+ TWO_PI / 3)) * 0.25f));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	public PVector calculateSuperformula(float u, float v) {
+		return calculatePoint(SUPERFORMULA, u, v);
+	}
+
+	public void calculateSuperformula(float u, float v, float[] theResult,
+			int theIndex) {
 		v /= 2;
 
 		// superformula 1
@@ -519,7 +1493,9 @@ public class Mesh extends PApplet {
 		float y = 2 * (r2 * sin(v));
 		float z = 2 * (r1 * cos(u) * r2 * cos(v));
 
-		return new PVector(x, y, z);
+		theResult[theIndex] = x;
+		theResult[theIndex + 1] = y;
+		theResult[theIndex + 2] = z;
 	}
 
 	// ------ definition of some mathematical functions ------
@@ -563,19 +1539,46 @@ public class Mesh extends PApplet {
 	 * Call this function to draw the mesh.
 	 */
 	public void draw() {
-		int iuMax, ivMax;
-
-		if (drawMode == QUADS || drawMode == TRIANGLES) {
-			iuMax = uCount - 1;
-			ivMax = vCount - 1;
-		} else {
-			iuMax = uCount;
-			ivMax = vCount - 1;
+		prepareLevels();
+		if (lod)
+			level = chooseLevel();
+		int l = Math.min(Math.max(level, 0), levelColumns.length - 1);
+		countTriangles(l);
+
+		if (retained) {
+			if (shapes == null || shapes.length != levelColumns.length
+					|| !retainedKeyMatches()) {
+				shapes = new PShape[levelColumns.length];
+				retainedVersion = version;
+				retainedKey = retainedKey();
+			}
+			if (shapes[l] == null) {
+				shapes[l] = buildShape(levelColumns[l], levelRows[l]);
+			}
+			parent.shape(shapes[l]);
+			return;
 		}
 
 		// store previously set colorMode
 		parent.pushStyle();
 		parent.colorMode(HSB, 360, 100, 100, 100);
+		tessellate(null, levelColumns[l], levelRows[l]);
+		parent.popStyle();
+	}
+
+	// draws the faces between the given columns and rows directly (theShape
+	// == null) or adds them to theShape. both ways use the same random
+	// numbers in the same order.
+	void tessellate(PShape theShape, int[] theColumns, int[] theRows) {
+		int iuMax, ivMax;
+
+		if (drawMode == QUADS || drawMode == TRIANGLES) {
+			iuMax = theColumns.length - 2;
+			ivMax = theRows.length - 2;
+		} else {
+			iuMax = theColumns.length - 1;
+			ivMax = theRows.length - 2;
+		}
 
 		float minH = minHue;
 		float maxH = maxHue;
@@ -595,84 +1598,425 @@ public class Mesh extends PApplet {
 			if (drawMode == TRIANGLES) {
 
 				for (int iu = 0; iu <= iuMax; iu++) {
-					parent.fill(random(minH, maxH), random(minS, maxS), random(
-							minB, maxB), meshAlpha);
-					parent.beginShape(drawMode);
-					float r1 = random(-meshDistortion, meshDistortion);
-					float r2 = random(-meshDistortion, meshDistortion);
-					float r3 = random(-meshDistortion, meshDistortion);
-					parent.vertex(points[iv][iu].x + r1, points[iv][iu].y + r2,
-							points[iv][iu].z + r3);
-					parent.vertex(points[iv + 1][iu + 1].x + r1,
-							points[iv + 1][iu + 1].y + r2,
-							points[iv + 1][iu + 1].z + r3);
-					parent.vertex(points[iv + 1][iu].x + r1,
-							points[iv + 1][iu].y + r2, points[iv + 1][iu].z
-									+ r3);
-					parent.endShape();
-
-					parent.fill(random(minH, maxH), random(minS, maxS), random(
-							minB, maxB), meshAlpha);
-					parent.beginShape(drawMode);
-					r1 = random(-meshDistortion, meshDistortion);
-					r2 = random(-meshDistortion, meshDistortion);
-					r3 = random(-meshDistortion, meshDistortion);
-					parent.vertex(points[iv + 1][iu + 1].x + r1,
-							points[iv + 1][iu + 1].y + r2,
-							points[iv + 1][iu + 1].z + r3);
-					parent.vertex(points[iv][iu].x + r1, points[iv][iu].y + r2,
-							points[iv][iu].z + r3);
-					parent.vertex(points[iv][iu + 1].x + r1,
-							points[iv][iu + 1].y + r2, points[iv][iu + 1].z
-									+ r3);
-					parent.endShape();
+					beginFace(theShape, randomSource.random(minH, maxH),
+							randomSource.random(minS, maxS),
+							randomSource.random(minB, maxB));
+					float r1 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r2 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r3 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					drawVertex(index(theColumns[iu], theRows[iv]), r1, r2, r3);
+					drawVertex(index(theColumns[iu + 1], theRows[iv + 1]),
+							r1, r2, r3);
+					drawVertex(index(theColumns[iu], theRows[iv + 1]),
+							r1, r2, r3);
+					endFace(theShape);
+
+					beginFace(theShape, randomSource.random(minH, maxH),
+							randomSource.random(minS, maxS),
+							randomSource.random(minB, maxB));
+					r1 = randomSource.random(-meshDistortion, meshDistortion);
+					r2 = randomSource.random(-meshDistortion, meshDistortion);
+					r3 = randomSource.random(-meshDistortion, meshDistortion);
+					drawVertex(index(theColumns[iu + 1], theRows[iv + 1]),
+							r1, r2, r3);
+					drawVertex(index(theColumns[iu], theRows[iv]), r1, r2, r3);
+					drawVertex(index(theColumns[iu + 1], theRows[iv]),
+							r1, r2, r3);
+					endFace(theShape);
 				}
 
 			} else if (drawMode == QUADS) {
 				for (int iu = 0; iu <= iuMax; iu++) {
-					parent.fill(random(minH, maxH), random(minS, maxS), random(
-							minB, maxB), meshAlpha);
-					parent.beginShape(drawMode);
-
-					float r1 = random(-meshDistortion, meshDistortion);
-					float r2 = random(-meshDistortion, meshDistortion);
-					float r3 = random(-meshDistortion, meshDistortion);
-					parent.vertex(points[iv][iu].x + r1, points[iv][iu].y + r2,
-							points[iv][iu].z + r3);
-					parent.vertex(points[iv + 1][iu].x + r1,
-							points[iv + 1][iu].y + r2, points[iv + 1][iu].z
-									+ r3);
-					parent.vertex(points[iv + 1][iu + 1].x + r1,
-							points[iv + 1][iu + 1].y + r2,
-							points[iv + 1][iu + 1].z + r3);
-					parent.vertex(points[iv][iu + 1].x + r1,
-							points[iv][iu + 1].y + r2, points[iv][iu + 1].z
-									+ r3);
-
-					parent.endShape();
+					beginFace(theShape, randomSource.random(minH, maxH),
+							randomSource.random(minS, maxS),
+							randomSource.random(minB, maxB));
+
+					float r1 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r2 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r3 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					drawVertex(index(theColumns[iu], theRows[iv]), r1, r2, r3);
+					drawVertex(index(theColumns[iu], theRows[iv + 1]),
+							r1, r2, r3);
+					drawVertex(index(theColumns[iu + 1], theRows[iv + 1]),
+							r1, r2, r3);
+					drawVertex(index(theColumns[iu + 1], theRows[iv]),
+							r1, r2, r3);
+
+					endFace(theShape);
 				}
 			} else {
 				// draw Strips
-				parent.fill(random(minH, maxH), random(minS, maxS), random(
-						minB, maxB), meshAlpha);
-				parent.beginShape(drawMode);
+				beginFace(theShape, randomSource.random(minH, maxH),
+						randomSource.random(minS, maxS),
+						randomSource.random(minB, maxB));
 
 				for (int iu = 0; iu <= iuMax; iu++) {
-					float r1 = random(-meshDistortion, meshDistortion);
-					float r2 = random(-meshDistortion, meshDistortion);
-					float r3 = random(-meshDistortion, meshDistortion);
-					parent.vertex(points[iv][iu].x + r1, points[iv][iu].y + r2,
-							points[iv][iu].z + r3);
-					parent.vertex(points[iv + 1][iu].x + r1,
-							points[iv + 1][iu].y + r2, points[iv + 1][iu].z
-									+ r3);
+					float r1 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r2 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					float r3 = randomSource.random(-meshDistortion,
+							meshDistortion);
+					drawVertex(index(theColumns[iu], theRows[iv]), r1, r2, r3);
+					drawVertex(index(theColumns[iu], theRows[iv + 1]),
+							r1, r2, r3);
 				}
 
-				parent.endShape();
+				endFace(theShape);
 			}
 
 		}
+	}
+
+	void beginFace(PShape theShape, float theH, float theS, float theB) {
+		if (theShape == null) {
+			current = null;
+			parent.fill(theH, theS, theB, meshAlpha);
+			parent.beginShape(drawMode);
+		} else if (drawMode == QUADS || drawMode == TRIANGLES) {
+			// all faces go into one shape, the fill is set per vertex
+			current = theShape;
+			current.fill(parent.color(theH, theS, theB, meshAlpha));
+		} else {
+			// every strip is a child of a group
+			current = parent.createShape();
+			current.beginShape(drawMode);
+			current.fill(parent.color(theH, theS, theB, meshAlpha));
+		}
+	}
+
+	void endFace(PShape theShape) {
+		if (theShape == null) {
+			parent.endShape();
+		} else if (current != theShape) {
+			current.endShape();
+			theShape.addChild(current);
+		}
+	}
+
+	void drawVertex(int theIndex, float r1, float r2, float r3) {
+		float x = vertices[theIndex] + r1;
+		float y = vertices[theIndex + 1] + r2;
+		float z = vertices[theIndex + 2] + r3;
+		if (current == null) {
+			parent.vertex(x, y, z);
+		} else {
+			current.vertex(x, y, z);
+		}
+	}
+
+	// ------ level of detail ------
+
+	// level that is drawn
+	int level = 0;
+	// columns and rows of every level
+	int[][] levelColumns, levelRows;
+	// center and radius of a sphere around all points
+	float[] bounds = new float[4];
+	int boundsVersion = -1;
+
+	// triangles drawn by this mesh in its last draw() and by all meshes in
+	// the current and the last frame
+	int drawnTriangles;
+	static int frameTriangles, lastFrameTriangles;
+	static int statsFrame = -1;
+
+	void prepareLevels() {
+		int count = Math.max(lodLevels, 1);
+		if (levelColumns != null && levelColumns.length == count
+				&& levelColumns[0].length == columns
+				&& levelRows[0].length == rows)
+			return;
+		levelColumns = new int[count][];
+		levelRows = new int[count][];
+		for (int l = 0; l < count; l++) {
+			levelColumns[l] = levelIndices(columns, 1 << l);
+			levelRows[l] = levelIndices(rows, 1 << l);
+		}
+	}
+
+	// every theStep-th index, always including the first and the last one
+	static int[] levelIndices(int theCount, int theStep) {
+		if (theCount < 2)
+			return new int[theCount];
+		int n = (theCount - 2) / theStep + 2;
+		int[] indices = new int[n];
+		for (int i = 0; i < n - 1; i++) {
+			indices[i] = i * theStep;
+		}
+		indices[n - 1] = theCount - 1;
+		return indices;
+	}
+
+	int chooseLevel() {
+		float required = projectedSize() / lodPixels;
+		int segments = Math.max(columns, rows) - 1;
+		int l = coarsestLevelFor(segments, required);
+		if (l > level) {
+			// only go to a coarser level if it is clearly enough
+			l = Math.max(level, coarsestLevelFor(segments, required
+					* (1 + lodHysteresis)));
+		}
+		return l;
+	}
+
+	// the coarsest level that still has the required number of segments
+	int coarsestLevelFor(int theSegments, float theRequired) {
+		int l = 0;
+		while (l + 1 < levelColumns.length
+				&& (theSegments >> (l + 1)) >= theRequired)
+			l++;
+		return l;
+	}
+
+	// diameter of the mesh on the screen in pixels
+	float projectedSize() {
+		if (boundsVersion != version) {
+			calculateBounds();
+			boundsVersion = version;
+		}
+		float cx = bounds[0], cy = bounds[1], cz = bounds[2], r = bounds[3];
+		float sx = parent.screenX(cx, cy, cz);
+		float sy = parent.screenY(cx, cy, cz);
+		float size = 0;
+		for (int axis = 0; axis < 3; axis++) {
+			float dx = parent.screenX(cx + (axis == 0 ? r : 0), cy
+					+ (axis == 1 ? r : 0), cz + (axis == 2 ? r : 0))
+					- sx;
+			float dy = parent.screenY(cx + (axis == 0 ? r : 0), cy
+					+ (axis == 1 ? r : 0), cz + (axis == 2 ? r : 0))
+					- sy;
+			size = Math.max(size, 2 * sqrt(dx * dx + dy * dy));
+		}
+		return size;
+	}
+
+	void calculateBounds() {
+		float[] b = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+				-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int i = 0; i < vertices.length; i += 3) {
+			for (int k = 0; k < 3; k++) {
+				float value = vertices[i + k];
+				if (value < b[k])
+					b[k] = value;
+				if (value > b[k + 3])
+					b[k + 3] = value;
+			}
+		}
+		for (int k = 0; k < 3; k++) {
+			bounds[k] = (b[k] + b[k + 3]) / 2;
+		}
+		bounds[3] = dist(b[0], b[1], b[2], b[3], b[4], b[5]) / 2;
+	}
+
+	void countTriangles(int theLevel) {
+		drawnTriangles = 2 * Math.max(levelColumns[theLevel].length - 1, 0)
+				* Math.max(levelRows[theLevel].length - 1, 0);
+		if (parent.frameCount != statsFrame) {
+			lastFrameTriangles = frameTriangles;
+			frameTriangles = 0;
+			statsFrame = parent.frameCount;
+		}
+		frameTriangles += drawnTriangles;
+	}
+
+	/**
+	 * @return Level of detail that was drawn last (0 = all points)
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the level of detail, if it isn't chosen automatically.
+	 * 
+	 * @param theLevel
+	 *            0 draws all points, every further level only every second
+	 *            column and row of the level before
+	 */
+	public void setLevel(int theLevel) {
+		level = theLevel;
+	}
+
+	/**
+	 * @return Number of triangles this mesh has drawn in its last draw().
+	 *         Quads and strips count as two triangles per face.
+	 */
+	public int getTriangleCount() {
+		return drawnTriangles;
+	}
+
+	/**
+	 * @return Number of triangles all meshes have drawn in the last complete
+	 *         frame
+	 */
+	public static int getTrianglesPerFrame() {
+		return lastFrameTriangles;
+	}
+
+	// ------ retained mode ------
+
+	PShape buildShape(int[] theColumns, int[] theRows) {
+		PShape shape;
+		parent.pushStyle();
+		parent.colorMode(HSB, 360, 100, 100, 100);
+		if (drawMode == QUADS || drawMode == TRIANGLES) {
+			shape = parent.createShape();
+			shape.beginShape(drawMode);
+			tessellate(shape, theColumns, theRows);
+			shape.endShape();
+		} else {
+			shape = parent.createShape(GROUP);
+			tessellate(shape, theColumns, theRows);
+		}
+		current = null;
 		parent.popStyle();
+		return shape;
+	}
+
+	// everything that changes the look of the retained shape
+	float[] retainedKey() {
+		return new float[] { drawMode, columns, rows, minHue, maxHue,
+				minSaturation, maxSaturation, minBrightness, maxBrightness,
+				meshAlpha, meshDistortion };
+	}
+
+	boolean retainedKeyMatches() {
+		float[] k = retainedKey;
+		return retainedVersion == version && k[0] == drawMode
+				&& k[1] == columns && k[2] == rows && k[3] == minHue
+				&& k[4] == maxHue && k[5] == minSaturation
+				&& k[6] == maxSaturation && k[7] == minBrightness
+				&& k[8] == maxBrightness && k[9] == meshAlpha
+				&& k[10] == meshDistortion;
+	}
+
+	/**
+	 * Call this after changing the points in getVertices() directly, so a
+	 * retained mesh is built again and the next update() calculates the
+	 * points again.
+	 */
+	public void invalidate() {
+		version++;
+		builtKey = null;
+	}
+
+	// index of the x-coordinate of a point in vertices
+	int index(int iu, int iv) {
+		return (iv * columns + iu) * 3;
+	}
+
+	// ------ points ------
+
+	/**
+	 * @return x, y and z of all points, getColumnCount() points per row,
+	 *         getRowCount() rows. The array is reused by update() as long as
+	 *         the number of points stays the same.
+	 */
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @param iu
+	 *            Index of the point in u direction (0 to getColumnCount() - 1)
+	 * @param iv
+	 *            Index of the point in v direction (0 to getRowCount() - 1)
+	 * @return A copy of the point
+	 */
+	public PVector getPoint(int iu, int iv) {
+		int i = index(iu, iv);
+		return new PVector(vertices[i], vertices[i + 1], vertices[i + 2]);
+	}
+
+	/**
+	 * Moves one point of the mesh. The change is lost with the next update().
+	 * 
+	 * @param iu
+	 *            Index of the point in u direction (0 to getColumnCount() - 1)
+	 * @param iv
+	 *            Index of the point in v direction (0 to getRowCount() - 1)
+	 * @param thePoint
+	 *            New position
+	 */
+	public void setPoint(int iu, int iv, PVector thePoint) {
+		int i = index(iu, iv);
+		vertices[i] = thePoint.x;
+		vertices[i + 1] = thePoint.y;
+		vertices[i + 2] = thePoint.z;
+		invalidate();
+	}
+
+	/**
+	 * @return Number of points per row at the last update (uCount + 1, or
+	 *         less in adaptive mode)
+	 */
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return Number of rows at the last update (vCount + 1, or less in
+	 *         adaptive mode)
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return u of every column at the last update
+	 */
+	public float[] getUValues() {
+		return uValues.clone();
+	}
+
+	/**
+	 * @return v of every row at the last update
+	 */
+	public float[] getVValues() {
+		return vValues.clone();
+	}
+
+	// ------ export ------
+
+	/**
+	 * Writes the mesh as binary STL file, e.g. for 3D printing. See
+	 * MeshExporter.
+	 * 
+	 * @param theFileName
+	 *            Name of the file. Relative paths are relative to the sketch
+	 *            folder.
+	 */
+	public void saveSTL(String theFileName) {
+		MeshExporter.saveSTL(this, parent.savePath(theFileName));
+	}
+
+	/**
+	 * Writes the mesh as binary PLY file. See MeshExporter.
+	 * 
+	 * @param theFileName
+	 *            Name of the file. Relative paths are relative to the sketch
+	 *            folder.
+	 */
+	public void savePLY(String theFileName) {
+		MeshExporter.savePLY(this, parent.savePath(theFileName));
+	}
+
+	/**
+	 * Writes the mesh as OBJ file. See MeshExporter.
+	 * 
+	 * @param theFileName
+	 *            Name of the file. Relative paths are relative to the sketch
+	 *            folder.
+	 */
+	public void saveOBJ(String theFileName) {
+		MeshExporter.saveOBJ(this, parent.savePath(theFileName));
 	}
 
 	// ------ getters and setters ------
@@ -685,6 +2029,38 @@ public class Mesh extends PApplet {
 		form = theValue;
 	}
 
+	/**
+	 * Sets a custom form given as formulas for x, y and z, e.g. "sin(u) *
+	 * (p0 + cos(v))". The formulas are compiled to bytecode, so they are
+	 * calculated as fast as an overridden calculatePoints(). Call update()
+	 * afterwards. See MeshFormula for the syntax.
+	 * 
+	 * @param theX
+	 *            Formula for x
+	 * @param theY
+	 *            Formula for y
+	 * @param theZ
+	 *            Formula for z
+	 * @throws IllegalArgumentException
+	 *             if one of the formulas contains an error
+	 */
+	public void setFormula(String theX, String theY, String theZ) {
+		setFormula(MeshFormula.compile(theX, theY, theZ));
+	}
+
+	/**
+	 * Sets a custom form that has already been compiled, so several meshes can
+	 * share it. Pass null to use calculatePoints() again.
+	 */
+	public void setFormula(MeshFormula theFormula) {
+		formula = theFormula;
+		form = CUSTOM;
+	}
+
+	public MeshFormula getFormula() {
+		return formula;
+	}
+
 	public String getFormName() {
 		switch (form) {
 		case CUSTOM:
@@ -815,6 +2191,99 @@ public class Mesh extends PApplet {
 		meshDistortion = theValue;
 	}
 
+	public boolean isRetained() {
+		return retained;
+	}
+
+	public void setRetained(boolean theValue) {
+		retained = theValue;
+		if (!retained) {
+			shapes = null;
+		}
+	}
+
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	public void setAdaptive(boolean theValue) {
+		adaptive = theValue;
+	}
+
+	public float getAdaptiveTolerance() {
+		return adaptiveTolerance;
+	}
+
+	public void setAdaptiveTolerance(float theValue) {
+		adaptiveTolerance = theValue;
+	}
+
+	public boolean isLod() {
+		return lod;
+	}
+
+	public void setLod(boolean theValue) {
+		lod = theValue;
+	}
+
+	public int getLodLevels() {
+		return lodLevels;
+	}
+
+	public void setLodLevels(int theValue) {
+		lodLevels = theValue;
+	}
+
+	public float getLodPixels() {
+		return lodPixels;
+	}
+
+	public void setLodPixels(float theValue) {
+		lodPixels = theValue;
+	}
+
+	public float getLodHysteresis() {
+		return lodHysteresis;
+	}
+
+	public void setLodHysteresis(float theValue) {
+		lodHysteresis = theValue;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(int theValue) {
+		cacheSize = theValue;
+		while (cache.size() > Math.max(cacheSize, 0))
+			cache.removeLast();
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean theValue) {
+		parallel = theValue;
+	}
+
+	/**
+	 * Sets the seed of the random colors and distortion. Call this before
+	 * draw() in every frame to draw the same mesh every frame.
+	 */
+	public void setSeed(long theSeed) {
+		randomSource.setSeed(theSeed);
+	}
+
+	public RandomSource getRandomSource() {
+		return randomSource;
+	}
+
+	public void setRandomSource(RandomSource theRandomSource) {
+		randomSource = theRandomSource;
+	}
+
 	public void setColorRange(float theMinHue, float theMaxHue,
 			float theMinSaturation, float theMaxSaturation,
 			float theMinBrightness, float theMaxBrightness, float theMeshAlpha) {
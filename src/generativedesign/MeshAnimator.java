@@ -0,0 +1,423 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Animates a mesh from one parameter set to another, or morphs it from one
+ * form into another. The points of the next frame are calculated by a
+ * background thread while the current points are drawn. update() swaps the
+ * new points in as soon as they are ready, so drawing never waits for the
+ * calculation, even for very large meshes.
+ * 
+ * <pre>
+ * animator = new MeshAnimator(myMesh);
+ * animator.morph(Mesh.TORUS, new float[] { 0.5f, 1 }, 2000);
+ * ...
+ * animator.update(); // in draw()
+ * myMesh.draw();
+ * ...
+ * animator.dispose(); // when the animator isn't needed anymore
+ * </pre>
+ * 
+ * Every animator has its own background thread, which runs until dispose()
+ * is called. So call dispose() before replacing an animator by a new one.
+ * 
+ * The mesh keeps its uCount, vCount, uMin, uMax, vMin and vMax during the
+ * animation. Custom forms can only be animated if they are given as formulas
+ * (see Mesh.setFormula()), as the points are calculated by meshes of the
+ * animator. For the same reason, overridden functions of built-in forms are
+ * not used. Don't call update() of the mesh while the animation runs.
+ */
+public class MeshAnimator {
+
+	// ------ properties ------
+	/**
+	 * Start and end slowly (default = true)
+	 */
+	public boolean ease = true;
+
+	/**
+	 * Play the animation forwards and backwards again and again (default =
+	 * false)
+	 */
+	public boolean loop = false;
+
+	// ------ private properties ------
+	Mesh mesh;
+	ExecutorService worker;
+
+	// the running animation
+	volatile Morph morph;
+	// points that are calculated, but not swapped in yet
+	AtomicReference<Frame> finished = new AtomicReference<Frame>();
+	// array the next frame is calculated into. null while the background
+	// thread is working.
+	float[] spare = new float[0];
+	float progress = 0;
+	// true if the mesh shows a blend of two forms, which can't be described
+	// by its form and params. version is the one of the mesh at that time.
+	boolean blended = false;
+	int blendedVersion;
+
+	// ------ constructors ------
+	/**
+	 * @param theMesh
+	 *            Mesh to animate
+	 */
+	public MeshAnimator(Mesh theMesh) {
+		mesh = theMesh;
+		worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable theRunnable) {
+				Thread thread = new Thread(theRunnable, "MeshAnimator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// ------ starting and stopping ------
+	/**
+	 * Animates the mesh from the points that are drawn at the moment to the
+	 * given form and params. This may also be in the middle of another
+	 * animation.
+	 * 
+	 * @param theForm
+	 *            Form at the end of the animation
+	 * @param theParams
+	 *            Params at the end of the animation. Params that aren't given
+	 *            stay as they are.
+	 * @param theDuration
+	 *            Duration in milliseconds
+	 */
+	public void morph(int theForm, float[] theParams, int theDuration) {
+		start(theForm, theParams, theDuration);
+	}
+
+	/**
+	 * Animates the params of the mesh to the given ones, without changing the
+	 * form. Like morph(), this starts from the points that are drawn at the
+	 * moment.
+	 * 
+	 * @param theParams
+	 *            Params at the end of the animation
+	 * @param theDuration
+	 *            Duration in milliseconds
+	 */
+	public void animate(float[] theParams, int theDuration) {
+		start(mesh.form, theParams, theDuration);
+	}
+
+	void start(int theForm, float[] theParams, int theDuration) {
+		Morph m = create(mesh.form, mesh.params, theForm, theParams,
+				theDuration);
+		// in the middle of a blend between two forms, the drawn points are
+		// the start. the grid has to be the one the animation calculates.
+		if (blended && blendedVersion == mesh.version
+				&& mesh.columns == m.uCount + 1 && mesh.rows == m.vCount + 1) {
+			m.fromVertices = mesh.vertices.clone();
+		}
+		begin(m);
+	}
+
+	/**
+	 * Animates the mesh from one form and parameter set to another. If both
+	 * forms are the same, the params are interpolated. Otherwise the points
+	 * of both forms are interpolated.
+	 * 
+	 * @param theFromForm
+	 *            Form at the start
+	 * @param theFromParams
+	 *            Params at the start
+	 * @param theToForm
+	 *            Form at the end
+	 * @param theToParams
+	 *            Params at the end
+	 * @param theDuration
+	 *            Duration in milliseconds
+	 */
+	public void morph(int theFromForm, float[] theFromParams, int theToForm,
+			float[] theToParams, int theDuration) {
+		begin(create(theFromForm, theFromParams, theToForm, theToParams,
+				theDuration));
+	}
+
+	Morph create(int theFromForm, float[] theFromParams, int theToForm,
+			float[] theToParams, int theDuration) {
+		Morph m = new Morph();
+		m.fromForm = theFromForm;
+		m.toForm = theToForm;
+		m.fromParams = params(theFromParams);
+		m.toParams = params(theToParams);
+		m.uCount = mesh.uCount;
+		m.vCount = mesh.vCount;
+		m.uMin = mesh.uMin;
+		m.uMax = mesh.uMax;
+		m.vMin = mesh.vMin;
+		m.vMax = mesh.vMax;
+		m.formula = mesh.formula;
+		m.parallel = mesh.parallel;
+		m.duration = Math.max(theDuration, 1) * 1000000L;
+		return m;
+	}
+
+	void begin(Morph theMorph) {
+		if (worker.isShutdown())
+			return;
+		theMorph.start = System.nanoTime();
+		progress = 0;
+		morph = theMorph;
+	}
+
+	// params filled up with the ones of the mesh
+	float[] params(float[] theParams) {
+		float[] p = mesh.params.clone();
+		System.arraycopy(theParams, 0, p, 0, Math.min(theParams.length,
+				p.length));
+		return p;
+	}
+
+	/**
+	 * Stops the animation. The mesh keeps the points it has at the moment.
+	 * Its form and params are the ones that are drawn. In the middle of a
+	 * blend between two forms, they are the ones of the nearer end, but the
+	 * drawn points are kept until the form or params are changed.
+	 */
+	public void stop() {
+		Morph m = morph;
+		morph = null;
+		if (m == null || !blended || blendedVersion != mesh.version)
+			return;
+		if (progress < 0.5f)
+			commit(m.fromForm, m.fromParams);
+		else
+			commit(m.toForm, m.toParams);
+		// the next update() of the mesh keeps the blended points, as long as
+		// nothing has changed
+		if (mesh.usesBuiltIn(mesh.form) && !mesh.adaptive)
+			mesh.builtKey = mesh.geometryKey();
+	}
+
+	void commit(int theForm, float[] theParams) {
+		mesh.form = theForm;
+		System.arraycopy(theParams, 0, mesh.params, 0, Math.min(
+				theParams.length, mesh.params.length));
+	}
+
+	/**
+	 * Stops the animation like stop() and ends the background thread. The
+	 * animator can't be used anymore afterwards.
+	 */
+	public void dispose() {
+		stop();
+		worker.shutdownNow();
+	}
+
+	/**
+	 * @return true while an animation is running
+	 */
+	public boolean isRunning() {
+		return morph != null;
+	}
+
+	/**
+	 * @return Progress of the points that are drawn at the moment (0 to 1)
+	 */
+	public float getProgress() {
+		return progress;
+	}
+
+	// ------ update ------
+	/**
+	 * Call this once per frame before drawing the mesh. Swaps the points
+	 * calculated in the background into the mesh, if there are new ones, and
+	 * starts calculating the next frame.
+	 * 
+	 * @return true if the points of the mesh have changed
+	 */
+	public boolean update() {
+		boolean changed = false;
+		Frame frame = finished.getAndSet(null);
+		if (frame != null) {
+			if (frame.morph == morph) {
+				spare = mesh.vertices;
+				swap(frame);
+				changed = true;
+			} else {
+				// frame of an animation that has been stopped or replaced
+				spare = frame.vertices;
+			}
+		}
+
+		Morph m = morph;
+		if (m != null && spare != null && !worker.isShutdown()) {
+			final Frame next = new Frame();
+			next.morph = m;
+			next.vertices = spare;
+			next.time = m.time(System.nanoTime(), loop);
+			spare = null;
+			worker.execute(new Runnable() {
+				public void run() {
+					next.calculate(ease);
+					finished.set(next);
+				}
+			});
+		}
+		return changed;
+	}
+
+	void swap(Frame theFrame) {
+		mesh.vertices = theFrame.vertices;
+		mesh.columns = theFrame.uValues.length;
+		mesh.rows = theFrame.vValues.length;
+		mesh.uValues = theFrame.uValues;
+		mesh.vValues = theFrame.vValues;
+		mesh.invalidate();
+		progress = theFrame.time;
+
+		// keep form and params of the mesh the ones that are drawn
+		Morph m = theFrame.morph;
+		if (theFrame.params != null) {
+			commit(m.toForm, theFrame.params);
+			blended = false;
+		} else if (theFrame.time >= 1) {
+			commit(m.toForm, m.toParams);
+			blended = false;
+		} else {
+			blended = true;
+			blendedVersion = mesh.version;
+		}
+
+		if (theFrame.time >= 1 && !loop) {
+			// the mesh now shows the end of the animation
+			morph = null;
+		}
+	}
+
+	// ------ animation ------
+	static class Morph {
+		int fromForm, toForm;
+		float[] fromParams, toParams;
+		int uCount, vCount;
+		float uMin, uMax, vMin, vMax;
+		MeshFormula formula;
+		boolean parallel;
+		long start, duration;
+
+		// points to start from instead of fromForm and fromParams
+		float[] fromVertices;
+
+		// meshes calculating the points. only used by the background thread.
+		Mesh from, to;
+		boolean calculated = false;
+
+		// time between 0 and 1
+		float time(long theNanos, boolean theLoop) {
+			double t = (theNanos - start) / (double) duration;
+			if (theLoop) {
+				t %= 2;
+				return (float) (t > 1 ? 2 - t : t);
+			}
+			return (float) Math.min(t, 1);
+		}
+
+		Mesh createMesh(int theForm, float[] theParams) {
+			Mesh m = new Mesh(null);
+			m.uCount = uCount;
+			m.vCount = vCount;
+			m.uMin = uMin;
+			m.uMax = uMax;
+			m.vMin = vMin;
+			m.vMax = vMax;
+			m.params = theParams.clone();
+			m.parallel = parallel;
+			m.cacheSize = 0;
+			if (theForm == Mesh.CUSTOM && formula != null)
+				m.setFormula(formula);
+			else
+				m.form = theForm;
+			return m;
+		}
+	}
+
+	static class Frame {
+		Morph morph;
+		float[] vertices;
+		float[] uValues, vValues;
+		// params the points were calculated with, if they weren't blended
+		float[] params;
+		float time;
+
+		void calculate(boolean theEase) {
+			Morph m = morph;
+			float t = theEase ? time * time * (3 - 2 * time) : time;
+			if (m.from == null && m.to == null) {
+				if (m.fromVertices == null)
+					m.from = m.createMesh(m.fromForm, m.fromParams);
+				if (m.toForm != m.fromForm || m.fromVertices != null)
+					m.to = m.createMesh(m.toForm, m.toParams);
+			}
+
+			if (m.to == null) {
+				// same form: calculate the points with interpolated params
+				// directly into the array of this frame
+				for (int i = 0; i < m.from.params.length; i++) {
+					m.from.params[i] = t >= 1 ? m.toParams[i] : m.fromParams[i]
+							+ (m.toParams[i] - m.fromParams[i]) * t;
+				}
+				m.from.vertices = vertices;
+				m.from.invalidate();
+				m.from.update();
+				vertices = m.from.vertices;
+				params = m.from.params.clone();
+			} else {
+				// different forms or drawn points as start: the points of the
+				// ends are calculated only once and then interpolated
+				if (!m.calculated) {
+					if (m.from != null)
+						m.from.update();
+					m.to.update();
+					m.calculated = true;
+				}
+				float[] a = m.from != null ? m.from.vertices : m.fromVertices;
+				float[] b = m.to.vertices;
+				if (vertices.length != a.length)
+					vertices = new float[a.length];
+				if (t >= 1) {
+					System.arraycopy(b, 0, vertices, 0, b.length);
+				} else {
+					for (int i = 0; i < a.length; i++) {
+						vertices[i] = a[i] + (b[i] - a[i]) * t;
+					}
+				}
+			}
+			Mesh grid = m.to != null ? m.to : m.from;
+			uValues = grid.uValues;
+			vValues = grid.vValues;
+		}
+	}
+
+}
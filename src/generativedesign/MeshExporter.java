@@ -0,0 +1,474 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the points of a mesh to a file as binary STL, binary PLY or OBJ,
+ * e.g. for 3D printing or rendering in another program. The faces are
+ * written directly from the points of the mesh through a small buffer, so
+ * even very large meshes need almost no extra memory.
+ * <p>
+ * Points that lie on top of each other at the seams of closed forms are
+ * merged: if the first and the last column (or row) are equal, they become
+ * the same vertices, and rows that have shrunk to a single point (like the
+ * poles of a sphere) become one vertex. Faces that have collapsed to a line
+ * are left out. So a torus or a sphere is written as a closed surface.
+ * 
+ * <pre>
+ * myMesh.update();
+ * myMesh.saveSTL(&quot;mesh.stl&quot;);
+ * </pre>
+ */
+public class MeshExporter {
+
+	final static int BUFFER_SIZE = 1 << 20;
+
+	// points closer than this, relative to the size of the mesh, are merged
+	final static float TOLERANCE = 1e-5f;
+
+	// ------ export ------
+	/**
+	 * Writes the mesh as binary STL file.
+	 * 
+	 * @param theMesh
+	 *            Mesh to write. update() must have been called.
+	 * @param thePath
+	 *            Absolute path of the file
+	 */
+	public static void saveSTL(Mesh theMesh, String thePath) {
+		Grid grid = new Grid(theMesh);
+		Output out = Output.open(thePath);
+		if (out == null)
+			return;
+		try {
+			for (int i = 0; i < 80; i++) {
+				out.putByte(0);
+			}
+			out.putInt(grid.countTriangles());
+
+			float[] p = theMesh.vertices;
+			for (int iv = 0; iv < grid.rows - 1; iv++) {
+				for (int iu = 0; iu < grid.columns - 1; iu++) {
+					int a = grid.point(iu, iv);
+					int b = grid.point(iu + 1, iv);
+					int c = grid.point(iu + 1, iv + 1);
+					int d = grid.point(iu, iv + 1);
+					if (a != b && b != c && c != a)
+						out.putTriangle(p, a, b, c);
+					if (a != c && c != d && d != a)
+						out.putTriangle(p, a, c, d);
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			System.out.println(thePath + " not accessible");
+			out.abort();
+		}
+	}
+
+	/**
+	 * Writes the mesh as binary PLY file (little endian) with a list of
+	 * vertices and triangles.
+	 * 
+	 * @param theMesh
+	 *            Mesh to write. update() must have been called.
+	 * @param thePath
+	 *            Absolute path of the file
+	 */
+	public static void savePLY(Mesh theMesh, String thePath) {
+		Grid grid = new Grid(theMesh);
+		Output out = Output.open(thePath);
+		if (out == null)
+			return;
+		try {
+			out.putText("ply\nformat binary_little_endian 1.0\n"
+					+ "comment generativedesign mesh\n" + "element vertex "
+					+ grid.vertexCount + "\nproperty float x\n"
+					+ "property float y\nproperty float z\n" + "element face "
+					+ grid.countTriangles() + "\n"
+					+ "property list uchar int vertex_indices\n"
+					+ "end_header\n");
+
+			float[] p = theMesh.vertices;
+			for (int iv = 0; iv < grid.uniqueRows; iv++) {
+				int count = grid.pole[iv] ? 1 : grid.uniqueColumns;
+				for (int iu = 0; iu < count; iu++) {
+					int i = grid.point(iu, iv);
+					out.putFloat(p[i]);
+					out.putFloat(p[i + 1]);
+					out.putFloat(p[i + 2]);
+				}
+			}
+
+			for (int iv = 0; iv < grid.rows - 1; iv++) {
+				for (int iu = 0; iu < grid.columns - 1; iu++) {
+					int a = grid.vertex(iu, iv);
+					int b = grid.vertex(iu + 1, iv);
+					int c = grid.vertex(iu + 1, iv + 1);
+					int d = grid.vertex(iu, iv + 1);
+					if (a != b && b != c && c != a) {
+						out.putByte(3);
+						out.putInt(a);
+						out.putInt(b);
+						out.putInt(c);
+					}
+					if (a != c && c != d && d != a) {
+						out.putByte(3);
+						out.putInt(a);
+						out.putInt(c);
+						out.putInt(d);
+					}
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			System.out.println(thePath + " not accessible");
+			out.abort();
+		}
+	}
+
+	/**
+	 * Writes the mesh as OBJ file with a list of vertices and triangles.
+	 * Coordinates are written with 6 decimal places.
+	 * 
+	 * @param theMesh
+	 *            Mesh to write. update() must have been called.
+	 * @param thePath
+	 *            Absolute path of the file
+	 */
+	public static void saveOBJ(Mesh theMesh, String thePath) {
+		Grid grid = new Grid(theMesh);
+		Output out = Output.open(thePath);
+		if (out == null)
+			return;
+		try {
+			out.putText("# generativedesign mesh\n");
+
+			float[] p = theMesh.vertices;
+			for (int iv = 0; iv < grid.uniqueRows; iv++) {
+				int count = grid.pole[iv] ? 1 : grid.uniqueColumns;
+				for (int iu = 0; iu < count; iu++) {
+					int i = grid.point(iu, iv);
+					out.putVertex(p[i], p[i + 1], p[i + 2]);
+				}
+			}
+
+			// indices in obj files start with 1
+			for (int iv = 0; iv < grid.rows - 1; iv++) {
+				for (int iu = 0; iu < grid.columns - 1; iu++) {
+					int a = grid.vertex(iu, iv) + 1;
+					int b = grid.vertex(iu + 1, iv) + 1;
+					int c = grid.vertex(iu + 1, iv + 1) + 1;
+					int d = grid.vertex(iu, iv + 1) + 1;
+					if (a != b && b != c && c != a)
+						out.putFace(a, b, c);
+					if (a != c && c != d && d != a)
+						out.putFace(a, c, d);
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			System.out.println(thePath + " not accessible");
+			out.abort();
+		}
+	}
+
+	// ------ merging points ------
+	// finds out which rows and columns of the mesh are the same and numbers
+	// the remaining vertices row by row. only one int per row is stored.
+	static class Grid {
+		float[] points;
+		int columns, rows;
+		int uniqueColumns, uniqueRows;
+		boolean[] pole;
+		int[] rowStart;
+		int vertexCount;
+		float tolerance;
+
+		Grid(Mesh theMesh) {
+			points = theMesh.vertices;
+			columns = theMesh.columns;
+			rows = theMesh.rows;
+			tolerance = TOLERANCE * size();
+
+			// rows that have shrunk to one point
+			pole = new boolean[rows];
+			for (int iv = 0; iv < rows; iv++) {
+				pole[iv] = columns > 1;
+				for (int iu = 1; iu < columns && pole[iv]; iu++) {
+					pole[iv] = same(index(0, iv), index(iu, iv));
+				}
+			}
+
+			// closed in u direction, if the last column equals the first one
+			boolean closedU = columns > 2;
+			for (int iv = 0; iv < rows && closedU; iv++) {
+				closedU = same(index(0, iv), index(columns - 1, iv));
+			}
+			boolean closedV = rows > 2;
+			for (int iu = 0; iu < columns && closedV; iu++) {
+				closedV = same(index(iu, 0), index(iu, rows - 1));
+			}
+			uniqueColumns = closedU ? columns - 1 : columns;
+			uniqueRows = closedV ? rows - 1 : rows;
+
+			rowStart = new int[rows];
+			vertexCount = 0;
+			for (int iv = 0; iv < uniqueRows; iv++) {
+				rowStart[iv] = vertexCount;
+				vertexCount += pole[iv] ? 1 : uniqueColumns;
+			}
+		}
+
+		// index of the vertex at this position of the grid
+		int vertex(int iu, int iv) {
+			if (iv >= uniqueRows)
+				iv = 0;
+			if (pole[iv])
+				return rowStart[iv];
+			if (iu >= uniqueColumns)
+				iu = 0;
+			return rowStart[iv] + iu;
+		}
+
+		// index of the x coordinate of the vertex in the points array
+		int point(int iu, int iv) {
+			if (iv >= uniqueRows)
+				iv = 0;
+			if (pole[iv] || iu >= uniqueColumns)
+				iu = 0;
+			return index(iu, iv);
+		}
+
+		int countTriangles() {
+			int count = 0;
+			for (int iv = 0; iv < rows - 1; iv++) {
+				for (int iu = 0; iu < columns - 1; iu++) {
+					int a = vertex(iu, iv);
+					int b = vertex(iu + 1, iv);
+					int c = vertex(iu + 1, iv + 1);
+					int d = vertex(iu, iv + 1);
+					if (a != b && b != c && c != a)
+						count++;
+					if (a != c && c != d && d != a)
+						count++;
+				}
+			}
+			return count;
+		}
+
+		int index(int iu, int iv) {
+			return (iv * columns + iu) * 3;
+		}
+
+		boolean same(int i, int j) {
+			return Math.abs(points[i] - points[j]) <= tolerance
+					&& Math.abs(points[i + 1] - points[j + 1]) <= tolerance
+					&& Math.abs(points[i + 2] - points[j + 2]) <= tolerance;
+		}
+
+		// largest extent of the bounding box
+		float size() {
+			float size = 0;
+			for (int k = 0; k < 3; k++) {
+				float min = Float.MAX_VALUE;
+				float max = -Float.MAX_VALUE;
+				for (int i = k; i < points.length; i += 3) {
+					if (points[i] < min)
+						min = points[i];
+					if (points[i] > max)
+						max = points[i];
+				}
+				if (max - min > size)
+					size = max - min;
+			}
+			return size;
+		}
+	}
+
+	// ------ output ------
+	// writes through a direct buffer into a file channel
+	static class Output {
+		String path;
+		RandomAccessFile file;
+		FileChannel channel;
+		ByteBuffer buffer;
+		// for formatting numbers in text files
+		byte[] digits = new byte[20];
+
+		static Output open(String thePath) {
+			Output out = new Output();
+			out.path = thePath;
+			try {
+				out.file = new RandomAccessFile(thePath, "rw");
+				out.file.setLength(0);
+			} catch (IOException e) {
+				System.out.println(thePath + " not accessible");
+				return null;
+			}
+			out.channel = out.file.getChannel();
+			out.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+					ByteOrder.LITTLE_ENDIAN);
+			return out;
+		}
+
+		void ensure(int theBytes) throws IOException {
+			if (buffer.remaining() < theBytes)
+				flush();
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		void close() throws IOException {
+			flush();
+			file.close();
+		}
+
+		void abort() {
+			try {
+				file.close();
+			} catch (IOException e) {
+			}
+		}
+
+		void putByte(int theValue) throws IOException {
+			ensure(1);
+			buffer.put((byte) theValue);
+		}
+
+		void putInt(int theValue) throws IOException {
+			ensure(4);
+			buffer.putInt(theValue);
+		}
+
+		void putFloat(float theValue) throws IOException {
+			ensure(4);
+			buffer.putFloat(theValue);
+		}
+
+		void putText(String theText) throws IOException {
+			for (int i = 0; i < theText.length(); i++) {
+				putByte(theText.charAt(i));
+			}
+		}
+
+		// normal, three corners and an empty attribute
+		void putTriangle(float[] p, int a, int b, int c) throws IOException {
+			ensure(50);
+			float ux = p[b] - p[a], uy = p[b + 1] - p[a + 1], uz = p[b + 2]
+					- p[a + 2];
+			float vx = p[c] - p[a], vy = p[c + 1] - p[a + 1], vz = p[c + 2]
+					- p[a + 2];
+			float nx = uy * vz - uz * vy;
+			float ny = uz * vx - ux * vz;
+			float nz = ux * vy - uy * vx;
+			float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length > 0) {
+				nx /= length;
+				ny /= length;
+				nz /= length;
+			}
+			buffer.putFloat(nx).putFloat(ny).putFloat(nz);
+			buffer.putFloat(p[a]).putFloat(p[a + 1]).putFloat(p[a + 2]);
+			buffer.putFloat(p[b]).putFloat(p[b + 1]).putFloat(p[b + 2]);
+			buffer.putFloat(p[c]).putFloat(p[c + 1]).putFloat(p[c + 2]);
+			buffer.putShort((short) 0);
+		}
+
+		void putFace(int a, int b, int c) throws IOException {
+			ensure(40);
+			buffer.put((byte) 'f');
+			buffer.put((byte) ' ');
+			putNumber(a);
+			buffer.put((byte) ' ');
+			putNumber(b);
+			buffer.put((byte) ' ');
+			putNumber(c);
+			buffer.put((byte) '\n');
+		}
+
+		void putVertex(float x, float y, float z) throws IOException {
+			ensure(200);
+			buffer.put((byte) 'v');
+			buffer.put((byte) ' ');
+			putDecimal(x);
+			buffer.put((byte) ' ');
+			putDecimal(y);
+			buffer.put((byte) ' ');
+			putDecimal(z);
+			buffer.put((byte) '\n');
+		}
+
+		// writes a number with up to 6 decimal places and without trailing
+		// zeros. Float.toString() would be much slower and create garbage.
+		void putDecimal(float theValue) {
+			if (Float.isNaN(theValue) || Float.isInfinite(theValue)
+					|| Math.abs(theValue) >= 1e12f) {
+				String text = Float.toString(theValue);
+				for (int i = 0; i < text.length(); i++) {
+					buffer.put((byte) text.charAt(i));
+				}
+				return;
+			}
+			long scaled = Math.round(Math.abs((double) theValue) * 1e6);
+			if (theValue < 0 && scaled != 0)
+				buffer.put((byte) '-');
+			putNumber(scaled / 1000000);
+			int fraction = (int) (scaled % 1000000);
+			if (fraction != 0) {
+				buffer.put((byte) '.');
+				int count = 6;
+				while (fraction % 10 == 0) {
+					fraction /= 10;
+					count--;
+				}
+				for (int i = count - 1; i >= 0; i--) {
+					digits[i] = (byte) ('0' + fraction % 10);
+					fraction /= 10;
+				}
+				buffer.put(digits, 0, count);
+			}
+		}
+
+		void putNumber(long theValue) {
+			int count = 0;
+			do {
+				digits[digits.length - 1 - count++] = (byte) ('0' + theValue % 10);
+				theValue /= 10;
+			} while (theValue > 0);
+			buffer.put(digits, digits.length - count, count);
+		}
+	}
+
+}
@@ -0,0 +1,753 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A custom form for the Mesh class, given as three formulas for x, y and z.
+ * The formulas are translated to Java bytecode when they are compiled, so
+ * they are calculated as fast as a hand-written calculatePoints() function.
+ * <p>
+ * A formula may contain:
+ * <ul>
+ * <li>u and v, the coordinates on the mesh</li>
+ * <li>params[0] to params[11] (or p0 to p11), the parameters of the mesh.
+ * Other indices are rejected.</li>
+ * <li>numbers and the constants PI, TWO_PI, HALF_PI, QUARTER_PI and E</li>
+ * <li>+, -, *, /, ^ (power) and brackets</li>
+ * <li>the functions sin, cos, tan, asin, acos, atan, atan2, sqrt, abs, exp,
+ * log, pow, min, max, floor and ceil</li>
+ * </ul>
+ * pow() and ^ work like Mesh.power(), so negative bases are allowed.
+ * Example:
+ * 
+ * <pre>
+ * myMesh.setFormula(&quot;sin(u) * (p0 + cos(v))&quot;, &quot;cos(u) * (p0 + cos(v))&quot;,
+ * 		&quot;sin(v)&quot;);
+ * </pre>
+ */
+public abstract class MeshFormula {
+
+	// ------ calculation ------
+	/**
+	 * Calculates a point of the form and writes x, y and z into theResult,
+	 * starting at theIndex.
+	 */
+	public abstract void calculate(float u, float v, float[] params,
+			float[] theResult, int theIndex);
+
+	/**
+	 * Same as Mesh.power(): b to the power of e, also for negative bases.
+	 */
+	public static float power(float b, float e) {
+		if (b >= 0 || (int) e == e) {
+			return (float) Math.pow(b, e);
+		} else {
+			return (float) -Math.pow(-b, e);
+		}
+	}
+
+	// the formulas this form was made of
+	String[] sources;
+
+	/**
+	 * @return The formulas for x, y and z
+	 */
+	public String[] getSources() {
+		return sources.clone();
+	}
+
+	// ------ creating formulas ------
+	/**
+	 * Parses the formulas and translates them to bytecode. If that isn't
+	 * possible (e.g. because of security restrictions), the formulas are
+	 * interpreted instead, which is a lot slower.
+	 * 
+	 * @param theX
+	 *            Formula for x
+	 * @param theY
+	 *            Formula for y
+	 * @param theZ
+	 *            Formula for z
+	 * @return The compiled form
+	 * @throws IllegalArgumentException
+	 *             if one of the formulas contains an error
+	 */
+	public static MeshFormula compile(String theX, String theY, String theZ) {
+		Term[] terms = parse(theX, theY, theZ);
+		MeshFormula formula;
+		try {
+			formula = new Compiler(terms).compile();
+		} catch (Throwable e) {
+			System.out.println("formula could not be compiled, interpreting it");
+			formula = new Interpreter(terms);
+		}
+		formula.sources = new String[] { theX, theY, theZ };
+		return formula;
+	}
+
+	/**
+	 * Parses the formulas, but calculates them by walking through the parsed
+	 * terms. This is only useful for comparison.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the formulas contains an error
+	 */
+	public static MeshFormula interpret(String theX, String theY, String theZ) {
+		MeshFormula formula = new Interpreter(parse(theX, theY, theZ));
+		formula.sources = new String[] { theX, theY, theZ };
+		return formula;
+	}
+
+	static Term[] parse(String theX, String theY, String theZ) {
+		return new Term[] { new Parser(theX).parse(), new Parser(theY).parse(),
+				new Parser(theZ).parse() };
+	}
+
+	// ------ terms ------
+	// number of params a formula may use, like in Mesh
+	static final int PARAM_COUNT = 12;
+
+	static final int CONSTANT = 0, U = 1, V = 2, PARAM = 3, ADD = 4,
+			SUBTRACT = 5, MULTIPLY = 6, DIVIDE = 7, NEGATE = 8, POWER = 9,
+			FUNCTION = 10;
+
+	// functions: name, number of arguments, class, method, descriptor. double
+	// functions of java.lang.Math get float arguments converted to double.
+	static final String[][] FUNCTIONS = {
+			{ "sin", "1", "java/lang/Math", "sin", "(D)D" },
+			{ "cos", "1", "java/lang/Math", "cos", "(D)D" },
+			{ "tan", "1", "java/lang/Math", "tan", "(D)D" },
+			{ "asin", "1", "java/lang/Math", "asin", "(D)D" },
+			{ "acos", "1", "java/lang/Math", "acos", "(D)D" },
+			{ "atan", "1", "java/lang/Math", "atan", "(D)D" },
+			{ "atan2", "2", "java/lang/Math", "atan2", "(DD)D" },
+			{ "sqrt", "1", "java/lang/Math", "sqrt", "(D)D" },
+			{ "exp", "1", "java/lang/Math", "exp", "(D)D" },
+			{ "log", "1", "java/lang/Math", "log", "(D)D" },
+			{ "floor", "1", "java/lang/Math", "floor", "(D)D" },
+			{ "ceil", "1", "java/lang/Math", "ceil", "(D)D" },
+			{ "abs", "1", "java/lang/Math", "abs", "(F)F" },
+			{ "min", "2", "java/lang/Math", "min", "(FF)F" },
+			{ "max", "2", "java/lang/Math", "max", "(FF)F" },
+			{ "pow", "2", "generativedesign/MeshFormula", "power", "(FF)F" } };
+
+	static class Term {
+		int type;
+		float value;
+		// index of the param or the function
+		int index;
+		Term a, b;
+
+		Term(int theType, Term theA, Term theB) {
+			type = theType;
+			a = theA;
+			b = theB;
+		}
+
+		float evaluate(float u, float v, float[] params) {
+			switch (type) {
+			case CONSTANT:
+				return value;
+			case U:
+				return u;
+			case V:
+				return v;
+			case PARAM:
+				return params[index];
+			case ADD:
+				return a.evaluate(u, v, params) + b.evaluate(u, v, params);
+			case SUBTRACT:
+				return a.evaluate(u, v, params) - b.evaluate(u, v, params);
+			case MULTIPLY:
+				return a.evaluate(u, v, params) * b.evaluate(u, v, params);
+			case DIVIDE:
+				return a.evaluate(u, v, params) / b.evaluate(u, v, params);
+			case NEGATE:
+				return -a.evaluate(u, v, params);
+			case POWER:
+				return power(a.evaluate(u, v, params), b.evaluate(u, v, params));
+			}
+			float x = a.evaluate(u, v, params);
+			float y = b == null ? 0 : b.evaluate(u, v, params);
+			switch (index) {
+			case 0: return (float) Math.sin(x);
+			case 1: return (float) Math.cos(x);
+			case 2: return (float) Math.tan(x);
+			case 3: return (float) Math.asin(x);
+			case 4: return (float) Math.acos(x);
+			case 5: return (float) Math.atan(x);
+			case 6: return (float) Math.atan2(x, y);
+			case 7: return (float) Math.sqrt(x);
+			case 8: return (float) Math.exp(x);
+			case 9: return (float) Math.log(x);
+			case 10: return (float) Math.floor(x);
+			case 11: return (float) Math.ceil(x);
+			case 12: return Math.abs(x);
+			case 13: return Math.min(x, y);
+			case 14: return Math.max(x, y);
+			default: return power(x, y);
+			}
+		}
+	}
+
+	// ------ parser ------
+	static class Parser {
+		String source;
+		int pos = 0;
+
+		Parser(String theSource) {
+			source = theSource;
+		}
+
+		Term parse() {
+			Term term = sum();
+			skipSpaces();
+			if (pos < source.length())
+				throw error();
+			return term;
+		}
+
+		// sum := product (('+' | '-') product)*
+		Term sum() {
+			Term term = product();
+			while (true) {
+				if (accept('+'))
+					term = new Term(ADD, term, product());
+				else if (accept('-'))
+					term = new Term(SUBTRACT, term, product());
+				else
+					return term;
+			}
+		}
+
+		// product := unary (('*' | '/') unary)*
+		Term product() {
+			Term term = unary();
+			while (true) {
+				if (accept('*'))
+					term = new Term(MULTIPLY, term, unary());
+				else if (accept('/'))
+					term = new Term(DIVIDE, term, unary());
+				else
+					return term;
+			}
+		}
+
+		// unary := '-' unary | '+' unary | factor ('^' unary)?
+		Term unary() {
+			if (accept('-'))
+				return new Term(NEGATE, unary(), null);
+			if (accept('+'))
+				return unary();
+			Term term = factor();
+			if (accept('^'))
+				term = new Term(POWER, term, unary());
+			return term;
+		}
+
+		Term factor() {
+			skipSpaces();
+			if (accept('(')) {
+				Term term = sum();
+				expect(')');
+				return term;
+			}
+			if (pos < source.length()
+					&& (Character.isDigit(source.charAt(pos)) || source
+							.charAt(pos) == '.')) {
+				return number();
+			}
+
+			int start = pos;
+			String name = name();
+			if (name.equals("u"))
+				return new Term(U, null, null);
+			if (name.equals("v"))
+				return new Term(V, null, null);
+			if (name.equals("params")) {
+				expect('[');
+				skipSpaces();
+				int index = pos;
+				Term term = param(digits(), index);
+				expect(']');
+				return term;
+			}
+			if (name.matches("p[0-9]+"))
+				return param(name.substring(1), start);
+			if (CONSTANTS.containsKey(name))
+				return constant(CONSTANTS.get(name));
+
+			for (int i = 0; i < FUNCTIONS.length; i++) {
+				if (FUNCTIONS[i][0].equals(name)) {
+					Term term = new Term(FUNCTION, null, null);
+					term.index = i;
+					expect('(');
+					term.a = sum();
+					if (FUNCTIONS[i][1].equals("2")) {
+						expect(',');
+						term.b = sum();
+					}
+					expect(')');
+					return term;
+				}
+			}
+			pos -= name.length();
+			throw error();
+		}
+
+		// params[0] to params[11] or p0 to p11
+		Term param(String theDigits, int thePosition) {
+			if (theDigits.length() > 9
+					|| Integer.parseInt(theDigits) >= PARAM_COUNT) {
+				throw new IllegalArgumentException("params[" + theDigits
+						+ "] at position " + thePosition
+						+ " doesn't exist (0 to " + (PARAM_COUNT - 1)
+						+ ") in formula: " + source);
+			}
+			Term term = new Term(PARAM, null, null);
+			term.index = Integer.parseInt(theDigits);
+			return term;
+		}
+
+		Term constant(float theValue) {
+			Term term = new Term(CONSTANT, null, null);
+			term.value = theValue;
+			return term;
+		}
+
+		Term number() {
+			int start = pos;
+			while (pos < source.length()
+					&& (Character.isDigit(source.charAt(pos)) || source
+							.charAt(pos) == '.'))
+				pos++;
+			// exponent like 1e-3
+			if (pos < source.length()
+					&& (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+				int mark = pos++;
+				if (pos < source.length()
+						&& (source.charAt(pos) == '-' || source.charAt(pos) == '+'))
+					pos++;
+				if (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+					while (pos < source.length()
+							&& Character.isDigit(source.charAt(pos)))
+						pos++;
+				} else {
+					pos = mark;
+				}
+			}
+			try {
+				return constant(Float.parseFloat(source.substring(start, pos)));
+			} catch (NumberFormatException e) {
+				pos = start;
+				throw error();
+			}
+		}
+
+		String digits() {
+			int start = pos;
+			while (pos < source.length() && Character.isDigit(source.charAt(pos)))
+				pos++;
+			if (start == pos)
+				throw error();
+			return source.substring(start, pos);
+		}
+
+		String name() {
+			skipSpaces();
+			int start = pos;
+			while (pos < source.length()
+					&& (Character.isLetterOrDigit(source.charAt(pos)) || source
+							.charAt(pos) == '_'))
+				pos++;
+			return source.substring(start, pos);
+		}
+
+		boolean accept(char c) {
+			skipSpaces();
+			if (pos < source.length() && source.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char c) {
+			if (!accept(c))
+				throw error();
+		}
+
+		void skipSpaces() {
+			while (pos < source.length()
+					&& Character.isWhitespace(source.charAt(pos)))
+				pos++;
+		}
+
+		IllegalArgumentException error() {
+			String found = pos < source.length() ? "'" + source.charAt(pos)
+					+ "'" : "end";
+			return new IllegalArgumentException("unexpected " + found
+					+ " at position " + pos + " in formula: " + source);
+		}
+	}
+
+	static final HashMap<String, Float> CONSTANTS = new HashMap<String, Float>();
+	static {
+		CONSTANTS.put("PI", (float) Math.PI);
+		CONSTANTS.put("TWO_PI", (float) (Math.PI * 2));
+		CONSTANTS.put("HALF_PI", (float) (Math.PI / 2));
+		CONSTANTS.put("QUARTER_PI", (float) (Math.PI / 4));
+		CONSTANTS.put("E", (float) Math.E);
+	}
+
+	// ------ interpreter ------
+	static class Interpreter extends MeshFormula {
+		Term x, y, z;
+
+		Interpreter(Term[] theTerms) {
+			x = theTerms[0];
+			y = theTerms[1];
+			z = theTerms[2];
+		}
+
+		public void calculate(float u, float v, float[] params,
+				float[] theResult, int theIndex) {
+			theResult[theIndex] = x.evaluate(u, v, params);
+			theResult[theIndex + 1] = y.evaluate(u, v, params);
+			theResult[theIndex + 2] = z.evaluate(u, v, params);
+		}
+	}
+
+	// ------ compiler ------
+	// writes a class file with a subclass of MeshFormula. the class has no
+	// branches, so it doesn't need stack map frames (class file version 49).
+	// terms that appear more than once (like sin(u) in all three formulas)
+	// are calculated once and kept in local variables.
+	static class Compiler {
+		static int classCount = 0;
+
+		Term[] terms;
+		ArrayList<Object> constants = new ArrayList<Object>();
+		HashMap<String, Integer> constantIndices = new HashMap<String, Integer>();
+		// how often a term appears and the local variables of repeated terms
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		HashMap<String, Integer> locals = new HashMap<String, Integer>();
+		int localCount = 6;
+		ByteArrayOutputStream code;
+
+		Compiler(Term[] theTerms) {
+			terms = theTerms;
+		}
+
+		MeshFormula compile() throws IOException,
+				ReflectiveOperationException {
+			String name;
+			synchronized (Compiler.class) {
+				name = "generativedesign/MeshFormula$Compiled" + classCount++;
+			}
+			String superName = "generativedesign/MeshFormula";
+			int thisClass = classConstant(name);
+			int superClass = classConstant(superName);
+			int init = methodConstant(superName, "<init>", "()V");
+			int codeName = utf8("Code");
+			int initName = utf8("<init>");
+			int initType = utf8("()V");
+			int calculateName = utf8("calculate");
+			int calculateType = utf8("(FF[F[FI)V");
+
+			// constructor: super()
+			code = new ByteArrayOutputStream();
+			code.write(0x2a); // aload_0
+			code.write(0xb7); // invokespecial
+			writeShort(code, init);
+			code.write(0xb1); // return
+			byte[] initCode = code.toByteArray();
+
+			// calculate(u, v, params, result, index)
+			code = new ByteArrayOutputStream();
+			int maxStack = 0;
+			for (int i = 0; i < 3; i++) {
+				count(terms[i]);
+			}
+			for (int i = 0; i < 3; i++) {
+				code.write(0x19); // aload result
+				code.write(4);
+				code.write(0x15); // iload index
+				code.write(5);
+				if (i > 0) {
+					code.write(0x03 + i); // iconst_i
+					code.write(0x60); // iadd
+				}
+				maxStack = Math.max(maxStack, 2 + write(terms[i]));
+				code.write(0x51); // fastore
+			}
+			code.write(0xb1); // return
+			byte[] calculateCode = code.toByteArray();
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(constants.size() + 1);
+			for (int i = 0; i < constants.size(); i++) {
+				Object c = constants.get(i);
+				if (c instanceof byte[]) {
+					out.write((byte[]) c);
+				} else {
+					out.writeByte(1);
+					out.writeUTF((String) c);
+				}
+			}
+			out.writeShort(0x21); // public super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+			writeMethod(out, initName, initType, codeName, 1, 1, initCode);
+			writeMethod(out, calculateName, calculateType, codeName,
+					maxStack, localCount, calculateCode);
+			out.writeShort(0); // attributes
+
+			byte[] classFile = bytes.toByteArray();
+			Class<?> c = new Loader(MeshFormula.class.getClassLoader()).define(
+					name.replace('/', '.'), classFile);
+			return (MeshFormula) c.getDeclaredConstructor().newInstance();
+		}
+
+		void writeMethod(DataOutputStream out, int theName, int theType,
+				int theCodeName, int theMaxStack, int theMaxLocals,
+				byte[] theCode) throws IOException {
+			out.writeShort(0x01); // public
+			out.writeShort(theName);
+			out.writeShort(theType);
+			out.writeShort(1);
+			out.writeShort(theCodeName);
+			out.writeInt(12 + theCode.length);
+			out.writeShort(theMaxStack);
+			out.writeShort(theMaxLocals);
+			out.writeInt(theCode.length);
+			out.write(theCode);
+			out.writeShort(0); // exceptions
+			out.writeShort(0); // attributes
+		}
+
+		// counts the terms. parts of a repeated term are only counted once, as
+		// they are calculated only once.
+		void count(Term t) {
+			if (isLeaf(t))
+				return;
+			String key = key(t);
+			Integer count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+			if (count == null) {
+				count(t.a);
+				if (t.b != null)
+					count(t.b);
+			}
+		}
+
+		static boolean isLeaf(Term t) {
+			return t.type == CONSTANT || t.type == U || t.type == V
+					|| t.type == PARAM;
+		}
+
+		static String key(Term t) {
+			switch (t.type) {
+			case CONSTANT:
+				return Float.toString(t.value);
+			case U:
+				return "u";
+			case V:
+				return "v";
+			case PARAM:
+				return "p" + t.index;
+			}
+			return t.type + ":" + t.index + "(" + key(t.a)
+					+ (t.b != null ? "," + key(t.b) : "") + ")";
+		}
+
+		// writes the code for a term and returns the stack size it needs
+		int write(Term t) {
+			if (isLeaf(t))
+				return writeTerm(t);
+			String key = key(t);
+			Integer local = locals.get(key);
+			if (local != null) {
+				code.write(0x17); // fload
+				code.write(local);
+				return 1;
+			}
+			int stack = writeTerm(t);
+			if (counts.get(key) > 1 && localCount < 256) {
+				code.write(0x59); // dup
+				code.write(0x38); // fstore
+				code.write(localCount);
+				locals.put(key, localCount++);
+				stack = Math.max(stack, 2);
+			}
+			return stack;
+		}
+
+		int writeTerm(Term t) {
+			switch (t.type) {
+			case CONSTANT:
+				if (t.value == 0 && 1 / t.value > 0) {
+					code.write(0x0b); // fconst_0
+				} else if (t.value == 1) {
+					code.write(0x0c); // fconst_1
+				} else if (t.value == 2) {
+					code.write(0x0d); // fconst_2
+				} else {
+					code.write(0x13); // ldc_w
+					writeShort(code, floatConstant(t.value));
+				}
+				return 1;
+			case U:
+				code.write(0x23); // fload_1
+				return 1;
+			case V:
+				code.write(0x24); // fload_2
+				return 1;
+			case PARAM:
+				code.write(0x2d); // aload_3
+				code.write(0x11); // sipush
+				writeShort(code, t.index);
+				code.write(0x30); // faload
+				return 2;
+			case NEGATE: {
+				int stack = write(t.a);
+				code.write(0x76); // fneg
+				return stack;
+			}
+			case ADD:
+			case SUBTRACT:
+			case MULTIPLY:
+			case DIVIDE: {
+				int stack = Math.max(write(t.a), 1 + write(t.b));
+				int[] ops = { 0x62, 0x66, 0x6a, 0x6e }; // fadd fsub fmul fdiv
+				code.write(ops[t.type - ADD]);
+				return stack;
+			}
+			case POWER: {
+				if (t.b.type == CONSTANT && t.b.value == 2) {
+					// same result as power(), but much faster
+					int stack = Math.max(write(t.a), 2);
+					code.write(0x59); // dup
+					code.write(0x6a); // fmul
+					return stack;
+				}
+				int stack = Math.max(write(t.a), 1 + write(t.b));
+				code.write(0xb8); // invokestatic
+				writeShort(code, methodConstant("generativedesign/MeshFormula",
+						"power", "(FF)F"));
+				return stack;
+			}
+			}
+
+			// functions
+			String[] f = FUNCTIONS[t.index];
+			boolean doubles = f[4].startsWith("(D");
+			int stack = write(t.a);
+			if (doubles) {
+				code.write(0x8d); // f2d
+				stack = Math.max(stack, 2);
+			}
+			if (t.b != null) {
+				int offset = doubles ? 2 : 1;
+				stack = Math.max(stack, offset + write(t.b));
+				if (doubles) {
+					code.write(0x8d); // f2d
+					stack = Math.max(stack, 4);
+				}
+			}
+			code.write(0xb8); // invokestatic
+			writeShort(code, methodConstant(f[2], f[3], f[4]));
+			if (doubles) {
+				code.write(0x90); // d2f
+			}
+			return stack;
+		}
+
+		// ------ constant pool ------
+		int utf8(String theValue) {
+			return constant("U" + theValue, theValue);
+		}
+
+		int classConstant(String theName) {
+			int name = utf8(theName);
+			return constant("C" + theName, new byte[] { 7, (byte) (name >> 8),
+					(byte) name });
+		}
+
+		int floatConstant(float theValue) {
+			int bits = Float.floatToIntBits(theValue);
+			return constant("F" + bits, new byte[] { 4, (byte) (bits >> 24),
+					(byte) (bits >> 16), (byte) (bits >> 8), (byte) bits });
+		}
+
+		int methodConstant(String theClass, String theName, String theType) {
+			int c = classConstant(theClass);
+			int name = utf8(theName);
+			int type = utf8(theType);
+			int nameAndType = constant("N" + theName + theType, new byte[] {
+					12, (byte) (name >> 8), (byte) name, (byte) (type >> 8),
+					(byte) type });
+			return constant("M" + theClass + "." + theName + theType,
+					new byte[] { 10, (byte) (c >> 8), (byte) c,
+							(byte) (nameAndType >> 8), (byte) nameAndType });
+		}
+
+		int constant(String theKey, Object theEntry) {
+			Integer index = constantIndices.get(theKey);
+			if (index == null) {
+				constants.add(theEntry);
+				index = constants.size();
+				constantIndices.put(theKey, index);
+			}
+			return index;
+		}
+
+		static void writeShort(ByteArrayOutputStream theStream, int theValue) {
+			theStream.write(theValue >> 8);
+			theStream.write(theValue);
+		}
+	}
+
+	static class Loader extends ClassLoader {
+		Loader(ClassLoader theParent) {
+			super(theParent);
+		}
+
+		Class<?> define(String theName, byte[] theClassFile) {
+			return defineClass(theName, theClassFile, 0, theClassFile.length);
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.Arrays;
+
+/**
+ * Reorders arrays of nodes and springs along a Morton curve (z-order), so that
+ * nodes which are close to each other in space are also close to each other
+ * in the array. Loops over the nodes (attraction, springs, drawing) then
+ * access the memory in a much more coherent order.
+ * <p>
+ * Only the order of the arrays is changed. Springs still reference their
+ * nodes directly and ids stay with their nodes, so nothing has to be
+ * remapped. As nodes move during the simulation, call one of the sort
+ * functions again every few hundred frames.
+ */
+public class MortonOrder {
+
+	// bits per axis. 3 * 10 bits for the code leave the lower 32 bits of the
+	// sort key for the array index.
+	static final int BITS = 10;
+	static final int CELLS = (1 << BITS) - 1;
+
+	// ------ sorting ------
+	/**
+	 * Sorts the nodes along the Morton curve. Like in Node.attract(), the array
+	 * may be filled up with null at the end.
+	 *
+	 * @param theNodes
+	 *            Array of nodes to sort in place
+	 */
+	public static void sort(Node[] theNodes) {
+		int count = count(theNodes);
+		if (count < 2)
+			return;
+		sort(theNodes, count, bounds(theNodes, count));
+	}
+
+	/**
+	 * Sorts the nodes and the springs along the Morton curve. Springs are
+	 * sorted by the position of the center between their two nodes.
+	 *
+	 * @param theNodes
+	 *            Array of nodes to sort in place
+	 * @param theSprings
+	 *            Array of springs to sort in place
+	 */
+	public static void sort(Node[] theNodes, Spring[] theSprings) {
+		int count = count(theNodes);
+		if (count < 1)
+			return;
+		float[] bounds = bounds(theNodes, count);
+		if (count > 1)
+			sort(theNodes, count, bounds);
+
+		int springCount = count(theSprings);
+		if (springCount < 2)
+			return;
+		long[] keys = new long[springCount];
+		for (int i = 0; i < springCount; i++) {
+			Node from = theSprings[i].fromNode;
+			Node to = theSprings[i].toNode;
+			int code = code((from.x + to.x) / 2, (from.y + to.y) / 2,
+					(from.z + to.z) / 2, bounds);
+			keys[i] = ((long) code << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		Spring[] sorted = new Spring[springCount];
+		for (int i = 0; i < springCount; i++) {
+			sorted[i] = theSprings[(int) keys[i]];
+		}
+		System.arraycopy(sorted, 0, theSprings, 0, springCount);
+	}
+
+	static void sort(Node[] theNodes, int theCount, float[] theBounds) {
+		int[] order = order(theNodes, theCount, theBounds);
+		Node[] sorted = new Node[theCount];
+		for (int i = 0; i < theCount; i++) {
+			sorted[i] = theNodes[order[i]];
+		}
+		System.arraycopy(sorted, 0, theNodes, 0, theCount);
+	}
+
+	// old indices of the nodes in sorted order, so arrays that belong to the
+	// nodes can be sorted the same way
+	static int[] order(Node[] theNodes, int theCount, float[] theBounds) {
+		long[] keys = new long[theCount];
+		for (int i = 0; i < theCount; i++) {
+			Node n = theNodes[i];
+			keys[i] = ((long) code(n.x, n.y, n.z, theBounds) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		int[] order = new int[theCount];
+		for (int i = 0; i < theCount; i++) {
+			// the lower 32 bits hold the old index
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	// ------ morton code ------
+	/**
+	 * Calculates the Morton code of a position inside the given bounds.
+	 *
+	 * @param theX
+	 *            X-coordinate
+	 * @param theY
+	 *            Y-coordinate
+	 * @param theZ
+	 *            Z-coordinate
+	 * @param theBounds
+	 *            Array containing minX, minY, minZ, maxX, maxY, maxZ
+	 * @return Code with 10 bits per axis, interleaved as zyx
+	 */
+	public static int code(float theX, float theY, float theZ,
+			float[] theBounds) {
+		int ix = quantize(theX, theBounds[0], theBounds[3]);
+		int iy = quantize(theY, theBounds[1], theBounds[4]);
+		int iz = quantize(theZ, theBounds[2], theBounds[5]);
+		return spread(ix) | (spread(iy) << 1) | (spread(iz) << 2);
+	}
+
+	/**
+	 * @param theNodes
+	 *            Array of nodes (may be filled up with null at the end)
+	 * @return Array containing minX, minY, minZ, maxX, maxY, maxZ of the nodes
+	 */
+	public static float[] bounds(Node[] theNodes) {
+		return bounds(theNodes, count(theNodes));
+	}
+
+	static float[] bounds(Node[] theNodes, int theCount) {
+		float[] b = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+				-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int i = 0; i < theCount; i++) {
+			Node n = theNodes[i];
+			if (n.x < b[0]) b[0] = n.x;
+			if (n.y < b[1]) b[1] = n.y;
+			if (n.z < b[2]) b[2] = n.z;
+			if (n.x > b[3]) b[3] = n.x;
+			if (n.y > b[4]) b[4] = n.y;
+			if (n.z > b[5]) b[5] = n.z;
+		}
+		return b;
+	}
+
+	// ------ helpers ------
+	static int count(Object[] theArray) {
+		int count = 0;
+		while (count < theArray.length && theArray[count] != null)
+			count++;
+		return count;
+	}
+
+	static int quantize(float theValue, float theMin, float theMax) {
+		if (!(theMax > theMin))
+			return 0;
+		int i = (int) ((theValue - theMin) / (theMax - theMin) * CELLS);
+		return i < 0 ? 0 : (i > CELLS ? CELLS : i);
+	}
+
+	// spreads the lower 10 bits of i, so that there are two zero bits between
+	// each of them
+	static int spread(int i) {
+		i &= 0x3ff;
+		i = (i | (i << 16)) & 0x30000ff;
+		i = (i | (i << 8)) & 0x300f00f;
+		i = (i | (i << 4)) & 0x30c30c3;
+		i = (i | (i << 2)) & 0x9249249;
+		return i;
+	}
+
+}
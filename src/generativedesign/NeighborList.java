@@ -0,0 +1,616 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the attraction and repulsion between a large number of nodes.
+ * Instead of testing every pair of nodes (as Node.attract(Node[]) does), every
+ * node gets a list of the nodes around it within the largest radius plus a
+ * safety margin called "skin". The lists are reused as long as no node has
+ * moved more than half of the skin since they were built, which is the case
+ * for most frames, as nodes move just a few pixels per frame.
+ * <p>
+ * One call of attract() has the same effect as calling attract(nodes) for
+ * every node:
+ * 
+ * <pre>
+ * NeighborList neighbors = new NeighborList(nodes);
+ * ...
+ * neighbors.attract();
+ * for (int i = 0; i &lt; nodes.length; i++) nodes[i].update();
+ * </pre>
+ * 
+ * If an InteractionMatrix is set, strength, radius and ramp are taken from
+ * the matrix, depending on the species of the two nodes.
+ * <p>
+ * For flat sketches, setFlat(true) switches to a 2D path: the grid has only
+ * one layer, distances are calculated from x and y only and the z velocity
+ * of the nodes is left untouched. Use Node.update2D() to move the nodes.
+ * <p>
+ * The lists are stored in one array for all nodes: the neighbors of node i
+ * are found at the indices getNeighborStart()[i] to getNeighborStart()[i + 1]
+ * (exclusive) of getNeighbors().
+ */
+public class NeighborList {
+
+	// minimum number of nodes per parallel task
+	final static int CHUNK_SIZE = 512;
+
+	// ------ public properties ------
+	/**
+	 * Safety margin that is added to the radius when building the lists
+	 * (default = 20). A larger skin means less rebuilds but longer lists.
+	 */
+	public float skin = 20;
+	/**
+	 * Use several cores for large numbers of nodes (default = true)
+	 */
+	public boolean parallel = true;
+	/**
+	 * Ignore the z-coordinates of the nodes (default = false). Changing it
+	 * rebuilds the lists on the next update.
+	 */
+	public boolean flat = false;
+
+	// ------ private properties ------
+	Node[] nodes = new Node[0];
+	int nodeCount = 0;
+	InteractionMatrix interactions = null;
+
+	// neighbors of all nodes (compressed sparse rows)
+	int[] neighborStart = new int[1];
+	int[] neighbors = new int[0];
+
+	// positions and radius at the time of the last build
+	float[] builtX = new float[0], builtY = new float[0], builtZ = new float[0];
+	float builtCutoff = -1;
+	// mode of the last build, flat may be changed directly at any time
+	boolean builtFlat = false;
+
+	// uniform grid used for building the lists
+	float gridMinX, gridMinY, gridMinZ, cellSize;
+	int cellsX, cellsY, cellsZ;
+	int[] cellStart = new int[1];
+	int[] cellFill = new int[0];
+	int[] cellNodes = new int[0];
+	int[] nodeCells = new int[0];
+
+	// statistics
+	int updateCount = 0;
+	int rebuildCount = 0;
+
+	// ------ constructors ------
+	/**
+	 * @param theNodes
+	 *            Nodes to handle. The array may be filled up with null at the
+	 *            end.
+	 */
+	public NeighborList(Node[] theNodes) {
+		setNodes(theNodes);
+	}
+
+	/**
+	 * @param theNodes
+	 *            Nodes to handle
+	 * @param theSkin
+	 *            Safety margin that is added to the radius
+	 */
+	public NeighborList(Node[] theNodes, float theSkin) {
+		skin = theSkin;
+		setNodes(theNodes);
+	}
+
+	// ------ attraction ------
+	/**
+	 * Updates the lists if necessary and calculates the attraction between
+	 * all nodes. Just like Node.attract(), this only changes the velocities of
+	 * the nodes.
+	 */
+	public void attract() {
+		update();
+		if (interactions != null) {
+			ParallelLoop loop = builtFlat ? speciesLoop2D : speciesLoop;
+			loop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+		} else {
+			ParallelLoop loop = builtFlat ? attractLoop2D : attractLoop;
+			loop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+		}
+	}
+
+	ParallelLoop attractLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int j = theStart; j < theEnd; j++) {
+				Node node = nodes[j];
+				float vx = 0, vy = 0, vz = 0;
+				// every neighbor attracts (or repulses) this node
+				for (int n = neighborStart[j]; n < neighborStart[j + 1]; n++) {
+					Node other = nodes[neighbors[n]];
+					float dx = other.x - node.x;
+					float dy = other.y - node.y;
+					float dz = other.z - node.z;
+					float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+					float f = force(d, other.radius, other.strength, other.ramp);
+					vx += dx * f;
+					vy += dy * f;
+					vz += dz * f;
+				}
+				node.velocity.x += vx;
+				node.velocity.y += vy;
+				node.velocity.z += vz;
+			}
+		}
+	};
+
+	ParallelLoop speciesLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			int speciesCount = interactions.speciesCount;
+			float[] strength = interactions.strength;
+			float[] radius = interactions.radius;
+			float[] ramp = interactions.ramp;
+			for (int j = theStart; j < theEnd; j++) {
+				Node node = nodes[j];
+				int target = node.species;
+				float vx = 0, vy = 0, vz = 0;
+				for (int n = neighborStart[j]; n < neighborStart[j + 1]; n++) {
+					Node other = nodes[neighbors[n]];
+					int pair = other.species * speciesCount + target;
+					float dx = other.x - node.x;
+					float dy = other.y - node.y;
+					float dz = other.z - node.z;
+					float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+					float f = force(d, radius[pair], strength[pair], ramp[pair]);
+					vx += dx * f;
+					vy += dy * f;
+					vz += dz * f;
+				}
+				node.velocity.x += vx;
+				node.velocity.y += vy;
+				node.velocity.z += vz;
+			}
+		}
+	};
+
+	ParallelLoop attractLoop2D = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int j = theStart; j < theEnd; j++) {
+				Node node = nodes[j];
+				float vx = 0, vy = 0;
+				for (int n = neighborStart[j]; n < neighborStart[j + 1]; n++) {
+					Node other = nodes[neighbors[n]];
+					float dx = other.x - node.x;
+					float dy = other.y - node.y;
+					float d = (float) Math.sqrt(dx * dx + dy * dy);
+					float f = force(d, other.radius, other.strength, other.ramp);
+					vx += dx * f;
+					vy += dy * f;
+				}
+				node.velocity.x += vx;
+				node.velocity.y += vy;
+			}
+		}
+	};
+
+	ParallelLoop speciesLoop2D = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			int speciesCount = interactions.speciesCount;
+			float[] strength = interactions.strength;
+			float[] radius = interactions.radius;
+			float[] ramp = interactions.ramp;
+			for (int j = theStart; j < theEnd; j++) {
+				Node node = nodes[j];
+				int target = node.species;
+				float vx = 0, vy = 0;
+				for (int n = neighborStart[j]; n < neighborStart[j + 1]; n++) {
+					Node other = nodes[neighbors[n]];
+					int pair = other.species * speciesCount + target;
+					float dx = other.x - node.x;
+					float dy = other.y - node.y;
+					float d = (float) Math.sqrt(dx * dx + dy * dy);
+					float f = force(d, radius[pair], strength[pair], ramp[pair]);
+					vx += dx * f;
+					vy += dy * f;
+				}
+				node.velocity.x += vx;
+				node.velocity.y += vy;
+			}
+		}
+	};
+
+	// same function as in Node.attract(), divided by the distance
+	static float force(float theDistance, float theRadius, float theStrength,
+			float theRamp) {
+		if (theDistance > 0 && theDistance < theRadius) {
+			float s = theDistance / theRadius;
+			if (theRamp != 1) {
+				s = (float) Math.pow(s, 1 / theRamp);
+			}
+			return s * 9 * theStrength * (1 / (s + 1) + ((s - 3) / 4))
+					/ theDistance;
+		}
+		return 0;
+	}
+
+	// ------ building the lists ------
+	/**
+	 * Rebuilds the lists if any node has moved more than half of the skin
+	 * since the last build, or if the radius of a node has grown.
+	 * 
+	 * @return true if the lists were rebuilt
+	 */
+	public boolean update() {
+		updateCount++;
+		if (needsRebuild()) {
+			rebuild();
+			return true;
+		}
+		return false;
+	}
+
+	boolean needsRebuild() {
+		if (builtCutoff < 0 || builtX.length < nodeCount || flat != builtFlat)
+			return true;
+		if (cutoff() > builtCutoff)
+			return true;
+
+		float limit = skin / 2;
+		limit *= limit;
+		if (flat) {
+			for (int i = 0; i < nodeCount; i++) {
+				float dx = nodes[i].x - builtX[i];
+				float dy = nodes[i].y - builtY[i];
+				if (dx * dx + dy * dy > limit)
+					return true;
+			}
+			return false;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = nodes[i];
+			float dx = node.x - builtX[i];
+			float dy = node.y - builtY[i];
+			float dz = node.z - builtZ[i];
+			if (dx * dx + dy * dy + dz * dz > limit)
+				return true;
+		}
+		return false;
+	}
+
+	float cutoff() {
+		if (interactions != null) {
+			return interactions.getMaxRadius() + skin;
+		}
+		float maxRadius = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			maxRadius = Math.max(maxRadius, nodes[i].radius);
+		}
+		return maxRadius + skin;
+	}
+
+	/**
+	 * Rebuilds the lists, no matter how far the nodes have moved.
+	 */
+	public void rebuild() {
+		rebuildCount++;
+		builtCutoff = cutoff();
+		builtFlat = flat;
+
+		if (builtX.length < nodeCount) {
+			builtX = new float[nodeCount];
+			builtY = new float[nodeCount];
+			builtZ = new float[nodeCount];
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			builtX[i] = nodes[i].x;
+			builtY[i] = nodes[i].y;
+			builtZ[i] = nodes[i].z;
+		}
+
+		buildGrid(builtCutoff);
+
+		// first count the neighbors of every node, then fill in the indices
+		if (neighborStart.length < nodeCount + 1) {
+			neighborStart = new int[nodeCount + 1];
+		}
+		neighborStart[0] = 0;
+		countLoop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+		for (int i = 0; i < nodeCount; i++) {
+			neighborStart[i + 1] += neighborStart[i];
+		}
+		if (neighbors.length < neighborStart[nodeCount]) {
+			neighbors = new int[neighborStart[nodeCount] * 5 / 4];
+		}
+		fillLoop.execute(0, nodeCount, CHUNK_SIZE, parallel);
+	}
+
+	ParallelLoop countLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int i = theStart; i < theEnd; i++) {
+				neighborStart[i + 1] = findNeighbors(i, -1);
+			}
+		}
+	};
+
+	ParallelLoop fillLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int i = theStart; i < theEnd; i++) {
+				findNeighbors(i, neighborStart[i]);
+			}
+		}
+	};
+
+	// counts the neighbors of node i and writes them to the list at theOffset
+	// (if theOffset >= 0)
+	int findNeighbors(int i, int theOffset) {
+		if (builtFlat)
+			return findNeighbors2D(i, theOffset);
+		float cutoff2 = builtCutoff * builtCutoff;
+		float x = builtX[i], y = builtY[i], z = builtZ[i];
+		int cell = nodeCells[i];
+		int cx = cell % cellsX;
+		int cy = (cell / cellsX) % cellsY;
+		int cz = cell / (cellsX * cellsY);
+		int count = 0;
+
+		int zMax = Math.min(cz + 1, cellsZ - 1);
+		int yMax = Math.min(cy + 1, cellsY - 1);
+		int xMax = Math.min(cx + 1, cellsX - 1);
+		for (int iz = Math.max(cz - 1, 0); iz <= zMax; iz++) {
+			for (int iy = Math.max(cy - 1, 0); iy <= yMax; iy++) {
+				for (int ix = Math.max(cx - 1, 0); ix <= xMax; ix++) {
+					int c = (iz * cellsY + iy) * cellsX + ix;
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						int j = cellNodes[k];
+						if (j == i)
+							continue;
+						float dx = builtX[j] - x;
+						float dy = builtY[j] - y;
+						float dz = builtZ[j] - z;
+						if (dx * dx + dy * dy + dz * dz < cutoff2) {
+							if (theOffset >= 0)
+								neighbors[theOffset + count] = j;
+							count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	int findNeighbors2D(int i, int theOffset) {
+		float cutoff2 = builtCutoff * builtCutoff;
+		float x = builtX[i], y = builtY[i];
+		int cell = nodeCells[i];
+		int cx = cell % cellsX;
+		int cy = cell / cellsX;
+		int count = 0;
+
+		int yMax = Math.min(cy + 1, cellsY - 1);
+		int xMax = Math.min(cx + 1, cellsX - 1);
+		for (int iy = Math.max(cy - 1, 0); iy <= yMax; iy++) {
+			for (int ix = Math.max(cx - 1, 0); ix <= xMax; ix++) {
+				int c = iy * cellsX + ix;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int j = cellNodes[k];
+					if (j == i)
+						continue;
+					float dx = builtX[j] - x;
+					float dy = builtY[j] - y;
+					if (dx * dx + dy * dy < cutoff2) {
+						if (theOffset >= 0)
+							neighbors[theOffset + count] = j;
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	void buildGrid(float theCellSize) {
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		float maxZ = -Float.MAX_VALUE;
+		gridMinX = gridMinY = gridMinZ = Float.MAX_VALUE;
+		for (int i = 0; i < nodeCount; i++) {
+			gridMinX = Math.min(gridMinX, builtX[i]);
+			gridMinY = Math.min(gridMinY, builtY[i]);
+			maxX = Math.max(maxX, builtX[i]);
+			maxY = Math.max(maxY, builtY[i]);
+		}
+		if (builtFlat) {
+			// a single layer of cells
+			gridMinZ = maxZ = 0;
+		} else {
+			for (int i = 0; i < nodeCount; i++) {
+				gridMinZ = Math.min(gridMinZ, builtZ[i]);
+				maxZ = Math.max(maxZ, builtZ[i]);
+			}
+		}
+
+		// cells must not be smaller than the cutoff. if the nodes are spread
+		// very wide, the cells get larger to limit the number of cells.
+		cellSize = Math.max(theCellSize, 1e-6f);
+		long maxCells = 4L * nodeCount + 64;
+		while (true) {
+			cellsX = cells(maxX - gridMinX);
+			cellsY = cells(maxY - gridMinY);
+			cellsZ = cells(maxZ - gridMinZ);
+			if ((long) cellsX * cellsY * cellsZ <= maxCells)
+				break;
+			cellSize *= 2;
+		}
+
+		int cellCount = cellsX * cellsY * cellsZ;
+		if (cellStart.length < cellCount + 1) {
+			cellStart = new int[cellCount + 1];
+			cellFill = new int[cellCount];
+		} else {
+			Arrays.fill(cellStart, 0, cellCount + 1, 0);
+			Arrays.fill(cellFill, 0, cellCount, 0);
+		}
+		if (nodeCells.length < nodeCount) {
+			nodeCells = new int[nodeCount];
+			cellNodes = new int[nodeCount];
+		}
+
+		// counting sort of the nodes by cell
+		for (int i = 0; i < nodeCount; i++) {
+			int ix = (int) ((builtX[i] - gridMinX) / cellSize);
+			int iy = (int) ((builtY[i] - gridMinY) / cellSize);
+			int iz = builtFlat ? 0 : (int) ((builtZ[i] - gridMinZ) / cellSize);
+			ix = Math.min(ix, cellsX - 1);
+			iy = Math.min(iy, cellsY - 1);
+			iz = Math.min(iz, cellsZ - 1);
+			int c = (iz * cellsY + iy) * cellsX + ix;
+			nodeCells[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < cellCount; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			int c = nodeCells[i];
+			cellNodes[cellStart[c] + cellFill[c]++] = i;
+		}
+	}
+
+	int cells(float theExtent) {
+		return (int) Math.min(theExtent / cellSize + 1, Integer.MAX_VALUE / 4);
+	}
+
+	// ------ getters and setters ------
+	/**
+	 * Sets the nodes to handle. The lists will be rebuilt with the next call
+	 * of update() or attract().
+	 * 
+	 * @param theNodes
+	 *            Nodes to handle. The array may be filled up with null at the
+	 *            end.
+	 */
+	public void setNodes(Node[] theNodes) {
+		nodes = theNodes;
+		nodeCount = 0;
+		while (nodeCount < nodes.length && nodes[nodeCount] != null)
+			nodeCount++;
+		builtCutoff = -1;
+	}
+
+	public Node[] getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return Index of the first neighbor of every node in getNeighbors(). The
+	 *         array has at least one entry more than there are nodes.
+	 */
+	public int[] getNeighborStart() {
+		return neighborStart;
+	}
+
+	/**
+	 * @return Indices of the neighbors of all nodes
+	 */
+	public int[] getNeighbors() {
+		return neighbors;
+	}
+
+	public InteractionMatrix getInteractions() {
+		return interactions;
+	}
+
+	/**
+	 * Sets a table of parameters for every pair of species. The lists are
+	 * built with the largest radius of the table.
+	 * 
+	 * @param theInteractions
+	 *            Table of parameters or null to use the values of the nodes
+	 */
+	public void setInteractions(InteractionMatrix theInteractions) {
+		this.interactions = theInteractions;
+		builtCutoff = -1;
+	}
+
+	public float getSkin() {
+		return skin;
+	}
+
+	public void setSkin(float theSkin) {
+		this.skin = theSkin;
+		builtCutoff = -1;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean theParallel) {
+		this.parallel = theParallel;
+	}
+
+	public boolean isFlat() {
+		return flat;
+	}
+
+	/**
+	 * @param theFlat
+	 *            true to ignore the z-coordinates of the nodes
+	 */
+	public void setFlat(boolean theFlat) {
+		this.flat = theFlat;
+		builtCutoff = -1;
+	}
+
+	/**
+	 * @return Number of calls of update() (also called by attract())
+	 */
+	public int getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * @return Number of times the lists were rebuilt
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	/**
+	 * @return Ratio of rebuilds to updates. 0.1 means that the lists were
+	 *         rebuilt every tenth frame on average.
+	 */
+	public float getRebuildFrequency() {
+		if (updateCount == 0)
+			return 0;
+		return rebuildCount / (float) updateCount;
+	}
+
+	/**
+	 * Resets the update and rebuild counters.
+	 */
+	public void resetStatistics() {
+		updateCount = 0;
+		rebuildCount = 0;
+	}
+
+}
@@ -71,7 +71,6 @@ public class Node extends PVector {
 	 * Velocity vector (speed)
 	 */
 	public PVector velocity = new PVector();
-	PVector pVelocity = new PVector();
 	/**
 	 * Maximum length of the velocity vector (default = 10)
 	 */
@@ -90,6 +89,9 @@ public class Node extends PVector {
 	public float strength = -1;
 	// parameter that influences the form of the function
 	public float ramp = 1.0f;
+	// kind of node, used to look up the parameters above in an
+	// InteractionMatrix (default = 0)
+	public int species = 0;
 
 	// ------ constructors ------
 	public Node() {
@@ -170,23 +172,10 @@ public class Node extends PVector {
 		update(false, false, false);
 	}
 	
-	@SuppressWarnings("deprecation")
 	public void update(boolean theLockX, boolean theLockY, boolean theLockZ) {
 
 		velocity.limit(maxVelocity);
 
-		// prevent oscillating by reducing velocity if angle to previous
-		// velocity is very large
-		/*float da = PVector.angleBetween(velocity, pVelocity);
-		if (!Float.isNaN(da)) {
-			da = PApplet.abs(1 - (da / PApplet.PI));
-			//da = PApplet.pow(da, 4);
-			if (da < 0.5) da = 0;
-			PApplet.println(id + ", " + da);
-			velocity.mult(da);
-		}*/
-		pVelocity = velocity.get();
-
 		if (!theLockX) x += velocity.x;
 		if (!theLockY) y += velocity.y;
 		if (!theLockZ) z += velocity.z;
@@ -225,6 +214,63 @@ public class Node extends PVector {
 		velocity.mult(1 - damping);
 	}
 
+	/**
+	 * Like update(), but only for x and y. The z-coordinate, the z velocity
+	 * and the z boundaries are ignored, which saves some time in flat
+	 * sketches with many nodes.
+	 */
+	public void update2D() {
+		float vx = velocity.x, vy = velocity.y;
+		float v2 = vx * vx + vy * vy;
+		if (v2 > maxVelocity * maxVelocity) {
+			float s = maxVelocity / (float) Math.sqrt(v2);
+			vx *= s;
+			vy *= s;
+		}
+
+		x += vx;
+		y += vy;
+
+		if (x < minX) {
+			x = minX - (x - minX);
+			vx = -vx;
+		}
+		if (x > maxX) {
+			x = maxX - (x - maxX);
+			vx = -vx;
+		}
+
+		if (y < minY) {
+			y = minY - (y - minY);
+			vy = -vy;
+		}
+		if (y > maxY) {
+			y = maxY - (y - maxY);
+			vy = -vy;
+		}
+
+		velocity.x = vx * (1 - damping);
+		velocity.y = vy * (1 - damping);
+	}
+
+	// copies all parameters except position, velocity and id from another
+	// node
+	void copyParameters(Node theNode) {
+		diameter = theNode.diameter;
+		minX = theNode.minX;
+		maxX = theNode.maxX;
+		minY = theNode.minY;
+		maxY = theNode.maxY;
+		minZ = theNode.minZ;
+		maxZ = theNode.maxZ;
+		maxVelocity = theNode.maxVelocity;
+		damping = theNode.damping;
+		radius = theNode.radius;
+		strength = theNode.strength;
+		ramp = theNode.ramp;
+		species = theNode.species;
+	}
+
 	// ------ getters and setters ------
 	public String getID() {
 		return id;
@@ -362,4 +408,12 @@ public class Node extends PVector {
 		this.ramp = theRamp;
 	}
 
+	public int getSpecies() {
+		return species;
+	}
+
+	public void setSpecies(int theSpecies) {
+		this.species = theSpecies;
+	}
+
 }
@@ -0,0 +1,346 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Sends the positions of nodes to other programs over the network, e.g. to
+ * draw the same simulation on several screens. Use the class NodeReceiver to
+ * receive the positions.
+ * <p>
+ * Like TrajectoryRecorder, every coordinate is sent as a 16 bit value inside
+ * the given bounds. publish() only copies the positions, sending is done by a
+ * background thread. If a receiver is slower than the simulation, frames are
+ * skipped for this receiver, so it always gets the latest frame. A slow or
+ * stalled receiver doesn't hold up the others.
+ * 
+ * <pre>
+ * broadcaster = new NodeBroadcaster(nodes, 12000, 0, 0, 0, width, height, 0);
+ * ...
+ * broadcaster.publish(); // in draw()
+ * </pre>
+ */
+public class NodeBroadcaster {
+
+	// ------ message format ------
+	final static int MAGIC = 0x46444447; // "GDDF"
+	// magic, node count, sequence number, time, bounds
+	final static int HEADER_SIZE = 4 + 4 + 8 + 8 + 6 * 4;
+
+	// ------ private properties ------
+	Node[] nodes;
+	int nodeCount;
+	float minX, minY, minZ, maxX, maxY, maxZ;
+	float scaleX, scaleY, scaleZ;
+
+	// all sockets are non-blocking and handled by the send thread
+	ServerSocketChannel server;
+	Selector selector;
+	CopyOnWriteArrayList<SocketChannel> clients =
+			new CopyOnWriteArrayList<SocketChannel>();
+	Thread sendThread;
+	volatile boolean running = true;
+
+	// triple buffering: publish() fills writeBuffer, the send thread sends
+	// sendBuffer, pendingBuffer is the latest complete frame
+	ByteBuffer writeBuffer, pendingBuffer, sendBuffer;
+	boolean pending = false;
+	final Object lock = new Object();
+	// number of the frame in sendBuffer
+	long sendSequence = 0;
+
+	// statistics
+	long sequence = 0;
+	volatile long sentFrames = 0, sentBytes = 0;
+
+	// ------ constructors ------
+	/**
+	 * Starts listening for receivers on the given port.
+	 * 
+	 * @param theNodes
+	 *            Nodes to send. The array may be filled up with null at the
+	 *            end.
+	 * @param thePort
+	 *            Port for the receivers to connect to
+	 * @param theMinX
+	 *            Minimum x position. Positions outside of the bounds are
+	 *            clamped.
+	 * @param theMinY
+	 *            Minimum y position
+	 * @param theMinZ
+	 *            Minimum z position
+	 * @param theMaxX
+	 *            Maximum x position
+	 * @param theMaxY
+	 *            Maximum y position
+	 * @param theMaxZ
+	 *            Maximum z position
+	 */
+	public NodeBroadcaster(Node[] theNodes, int thePort, float theMinX,
+			float theMinY, float theMinZ, float theMaxX, float theMaxY,
+			float theMaxZ) {
+		nodes = theNodes;
+		nodeCount = 0;
+		while (nodeCount < nodes.length && nodes[nodeCount] != null)
+			nodeCount++;
+
+		minX = theMinX;
+		minY = theMinY;
+		minZ = theMinZ;
+		maxX = theMaxX;
+		maxY = theMaxY;
+		maxZ = theMaxZ;
+		scaleX = TrajectoryRecorder.scale(minX, maxX);
+		scaleY = TrajectoryRecorder.scale(minY, maxY);
+		scaleZ = TrajectoryRecorder.scale(minZ, maxZ);
+
+		int size = HEADER_SIZE + nodeCount * 6;
+		writeBuffer = allocate(size);
+		pendingBuffer = allocate(size);
+		sendBuffer = allocate(size);
+
+		try {
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(thePort));
+			server.configureBlocking(false);
+			selector = Selector.open();
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			System.out.println("port " + thePort + " not available");
+			close(server);
+			close(selector);
+			server = null;
+			return;
+		}
+
+		sendThread = new Thread("NodeBroadcaster send") {
+			@Override
+			public void run() {
+				sendFrames();
+			}
+		};
+		sendThread.setDaemon(true);
+		sendThread.start();
+	}
+
+	static ByteBuffer allocate(int theSize) {
+		return ByteBuffer.allocateDirect(theSize).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// ------ publishing ------
+	/**
+	 * Copies the current positions of the nodes and hands them over to the
+	 * send thread. Never waits for the receivers.
+	 */
+	public void publish() {
+		if (server == null)
+			return;
+
+		ByteBuffer b = writeBuffer;
+		b.clear();
+		b.putInt(MAGIC);
+		b.putInt(nodeCount);
+		b.putLong(++sequence);
+		b.putLong(System.nanoTime());
+		b.putFloat(minX);
+		b.putFloat(minY);
+		b.putFloat(minZ);
+		b.putFloat(maxX);
+		b.putFloat(maxY);
+		b.putFloat(maxZ);
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = nodes[i];
+			b.putShort(TrajectoryRecorder.quantize(node.x, minX, scaleX));
+			b.putShort(TrajectoryRecorder.quantize(node.y, minY, scaleY));
+			b.putShort(TrajectoryRecorder.quantize(node.z, minZ, scaleZ));
+		}
+		b.flip();
+
+		synchronized (lock) {
+			writeBuffer = pendingBuffer;
+			pendingBuffer = b;
+			pending = true;
+		}
+		selector.wakeup();
+	}
+
+	// a connected receiver with its own copy of the frame it is sending, so
+	// it can take as long as it needs without blocking the others
+	static class Client {
+		SocketChannel channel;
+		ByteBuffer frame;
+		long sequence = 0;
+
+		Client(SocketChannel theChannel, int theSize) {
+			channel = theChannel;
+			frame = allocate(theSize);
+			frame.limit(0);
+		}
+	}
+
+	// runs in the send thread
+	void sendFrames() {
+		try {
+			while (running) {
+				selector.select();
+				if (!running)
+					break;
+				if (server.isOpen()) {
+					acceptClients();
+				}
+				selector.selectedKeys().clear();
+
+				synchronized (lock) {
+					if (pending) {
+						ByteBuffer b = sendBuffer;
+						sendBuffer = pendingBuffer;
+						pendingBuffer = b;
+						pending = false;
+						sendSequence++;
+						sentFrames++;
+					}
+				}
+
+				for (SelectionKey key : selector.keys()) {
+					if (key.isValid() && key.attachment() != null) {
+						send(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			if (running) {
+				System.out.println("error while sending frames");
+			}
+		}
+		close(selector);
+	}
+
+	void acceptClients() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.register(selector, 0,
+					new Client(channel, sendBuffer.capacity()));
+			clients.add(channel);
+		}
+	}
+
+	// writes as much of the current frame as the receiver takes without
+	// waiting. when a frame is done, the receiver continues with the latest
+	// frame, the ones in between are skipped.
+	void send(SelectionKey theKey) {
+		Client client = (Client) theKey.attachment();
+		if (!client.frame.hasRemaining()) {
+			if (client.sequence == sendSequence) {
+				theKey.interestOps(0);
+				return;
+			}
+			client.frame.clear();
+			client.frame.put(sendBuffer.duplicate());
+			client.frame.flip();
+			client.sequence = sendSequence;
+		}
+		try {
+			sentBytes += client.channel.write(client.frame);
+		} catch (IOException e) {
+			// receiver has gone
+			clients.remove(client.channel);
+			close(client.channel);
+			return;
+		}
+		// wait until the receiver can take more data
+		theKey.interestOps(client.frame.hasRemaining() ? SelectionKey.OP_WRITE
+				: 0);
+	}
+
+	static void close(Closeable theCloseable) {
+		if (theCloseable == null)
+			return;
+		try {
+			theCloseable.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Disconnects all receivers and stops listening.
+	 */
+	public void close() {
+		if (server == null)
+			return;
+		running = false;
+		selector.wakeup();
+		close(server);
+		for (SocketChannel client : clients) {
+			close(client);
+		}
+		clients.clear();
+		server = null;
+	}
+
+	// ------ getters ------
+	/**
+	 * @return Number of connected receivers
+	 */
+	public int getReceiverCount() {
+		return clients.size();
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return Number of calls of publish()
+	 */
+	public long getPublishedFrames() {
+		return sequence;
+	}
+
+	/**
+	 * @return Number of frames taken over by the send thread (frames are
+	 *         skipped if publish() is called faster than they can be sent)
+	 */
+	public long getSentFrames() {
+		return sentFrames;
+	}
+
+	/**
+	 * @return Number of bytes sent to all receivers
+	 */
+	public long getSentBytes() {
+		return sentBytes;
+	}
+
+}
@@ -0,0 +1,475 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import processing.core.PVector;
+
+/**
+ * Emits nodes with a limited lifetime. All nodes are created in advance, so
+ * spawning and killing nodes doesn't create any new objects. Dead nodes are
+ * reused for the next spawns.
+ * <p>
+ * The living nodes are always stored at the beginning of the array returned
+ * by getNodes(), followed by null, so the array can be used directly with
+ * Node.attract(Node[]). As killing a node moves the last living node into its
+ * place, the order of the nodes changes. A NeighborList only knows the nodes
+ * that were alive when setNodes() was called, so call setNodes() again
+ * whenever update() returns true. Use sort() instead of MortonOrder.sort(),
+ * which would separate the nodes from their ages.
+ * 
+ * <pre>
+ * emitter = new NodeEmitter(width / 2, height / 2, 10000);
+ * emitter.setRate(20);
+ * emitter.setLifetime(100, 200);
+ * ...
+ * emitter.update(); // spawns and kills nodes
+ * Node[] nodes = emitter.getNodes();
+ * for (int i = 0; i &lt; emitter.getCount(); i++) nodes[i].update();
+ * </pre>
+ */
+public class NodeEmitter extends PVector {
+
+	private static final long serialVersionUID = 1L;
+
+	// ------ public properties ------
+	/**
+	 * Number of nodes spawned per frame. Fractions are carried over to the
+	 * next frames (default = 1).
+	 */
+	public float rate = 1;
+	/**
+	 * Minimum lifetime of the nodes in frames (default = 100)
+	 */
+	public float minLifetime = 100;
+	/**
+	 * Maximum lifetime of the nodes in frames (default = 100)
+	 */
+	public float maxLifetime = 100;
+	/**
+	 * Maximum distance of new nodes to the emitter position (default = 0)
+	 */
+	public float spread = 0;
+	/**
+	 * Start velocity of new nodes
+	 */
+	public PVector velocity = new PVector();
+	/**
+	 * Random variation that is added to the start velocity (default = 1)
+	 */
+	public float velocitySpread = 1;
+	/**
+	 * If true (default), the random variation of position and velocity is
+	 * only applied in the x/y plane.
+	 */
+	public boolean flat = true;
+	/**
+	 * New nodes get the radius, strength, damping, boundary, etc. of this node
+	 */
+	public Node template = new Node();
+
+	// ------ private properties ------
+	Node[] nodes;
+	int count = 0;
+	// age and lifetime of the living nodes (same order as nodes)
+	float[] ages, lifetimes;
+	// stack of dead nodes
+	Node[] pool;
+	int poolCount;
+
+	float spawnRemainder = 0;
+	RandomSource random = new RandomSource();
+
+	// statistics
+	int frames = 0;
+	long spawnCount = 0, killCount = 0, failedCount = 0;
+	int frameSpawns = 0, frameKills = 0;
+
+	// ------ constructors ------
+	/**
+	 * Creates an emitter at position (theX, theY, 0).
+	 * 
+	 * @param theCapacity
+	 *            Maximum number of living nodes
+	 */
+	public NodeEmitter(float theX, float theY, int theCapacity) {
+		this(theX, theY, 0, theCapacity);
+	}
+
+	/**
+	 * Creates an emitter at position (theX, theY, theZ).
+	 * 
+	 * @param theCapacity
+	 *            Maximum number of living nodes
+	 */
+	public NodeEmitter(float theX, float theY, float theZ, int theCapacity) {
+		super(theX, theY, theZ);
+		// one more entry, so the array is always terminated by null
+		nodes = new Node[theCapacity + 1];
+		ages = new float[theCapacity];
+		lifetimes = new float[theCapacity];
+		pool = new Node[theCapacity];
+		for (int i = 0; i < theCapacity; i++) {
+			pool[i] = new Node();
+		}
+		poolCount = theCapacity;
+	}
+
+	// ------ spawning and killing ------
+	/**
+	 * Ages all nodes by one frame, kills the nodes whose lifetime is over and
+	 * spawns new nodes according to the rate.
+	 * 
+	 * @return true if any node was spawned or killed
+	 */
+	public boolean update() {
+		frames++;
+		frameSpawns = 0;
+		frameKills = 0;
+
+		int i = 0;
+		while (i < count) {
+			ages[i]++;
+			if (ages[i] >= lifetimes[i]) {
+				// the last node moves to index i, so don't increase i
+				kill(i);
+			} else {
+				i++;
+			}
+		}
+
+		spawnRemainder += rate;
+		int n = (int) spawnRemainder;
+		spawnRemainder -= n;
+		for (int j = 0; j < n; j++) {
+			spawn();
+		}
+
+		return frameSpawns > 0 || frameKills > 0;
+	}
+
+	/**
+	 * Spawns a node at the emitter position.
+	 * 
+	 * @return The new node or null if all nodes of the pool are alive
+	 */
+	public Node spawn() {
+		if (poolCount == 0) {
+			failedCount++;
+			return null;
+		}
+		Node node = pool[--poolCount];
+		pool[poolCount] = null;
+
+		reset(node);
+		float lifetime = minLifetime;
+		if (maxLifetime > minLifetime) {
+			lifetime += random.nextFloat() * (maxLifetime - minLifetime);
+		}
+		nodes[count] = node;
+		ages[count] = 0;
+		lifetimes[count] = lifetime;
+		count++;
+
+		spawnCount++;
+		frameSpawns++;
+		return node;
+	}
+
+	void reset(Node theNode) {
+		Node t = template;
+		theNode.x = x;
+		theNode.y = y;
+		theNode.z = z;
+		if (spread > 0) {
+			// random position inside a circle or sphere
+			float dx, dy, dz;
+			do {
+				dx = random.nextFloat() * 2 - 1;
+				dy = random.nextFloat() * 2 - 1;
+				dz = flat ? 0 : random.nextFloat() * 2 - 1;
+			} while (dx * dx + dy * dy + dz * dz > 1);
+			theNode.x += dx * spread;
+			theNode.y += dy * spread;
+			theNode.z += dz * spread;
+		}
+		theNode.velocity.x = velocity.x + (random.nextFloat() * 2 - 1)
+				* velocitySpread;
+		theNode.velocity.y = velocity.y + (random.nextFloat() * 2 - 1)
+				* velocitySpread;
+		theNode.velocity.z = velocity.z;
+		if (!flat) {
+			theNode.velocity.z += (random.nextFloat() * 2 - 1) * velocitySpread;
+		}
+
+		theNode.id = t.id;
+		theNode.copyParameters(t);
+	}
+
+	/**
+	 * Kills the node at the given index. The last living node takes its
+	 * place.
+	 * 
+	 * @param theIndex
+	 *            Index of the node in getNodes()
+	 */
+	public void kill(int theIndex) {
+		if (theIndex < 0 || theIndex >= count)
+			return;
+		pool[poolCount++] = nodes[theIndex];
+
+		count--;
+		nodes[theIndex] = nodes[count];
+		ages[theIndex] = ages[count];
+		lifetimes[theIndex] = lifetimes[count];
+		nodes[count] = null;
+
+		killCount++;
+		frameKills++;
+	}
+
+	/**
+	 * Kills the given node.
+	 * 
+	 * @param theNode
+	 *            A living node of this emitter
+	 */
+	public void kill(Node theNode) {
+		for (int i = 0; i < count; i++) {
+			if (nodes[i] == theNode) {
+				kill(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Kills all nodes.
+	 */
+	public void clear() {
+		while (count > 0) {
+			kill(count - 1);
+		}
+	}
+
+	/**
+	 * Sorts the living nodes along a Morton curve like MortonOrder.sort(),
+	 * keeping their ages and lifetimes.
+	 */
+	public void sort() {
+		if (count < 2)
+			return;
+		int[] order = MortonOrder.order(nodes, count,
+				MortonOrder.bounds(nodes, count));
+		Node[] sortedNodes = new Node[count];
+		float[] sortedAges = new float[count];
+		float[] sortedLifetimes = new float[count];
+		for (int i = 0; i < count; i++) {
+			sortedNodes[i] = nodes[order[i]];
+			sortedAges[i] = ages[order[i]];
+			sortedLifetimes[i] = lifetimes[order[i]];
+		}
+		System.arraycopy(sortedNodes, 0, nodes, 0, count);
+		System.arraycopy(sortedAges, 0, ages, 0, count);
+		System.arraycopy(sortedLifetimes, 0, lifetimes, 0, count);
+	}
+
+	// ------ getters and setters ------
+	/**
+	 * @return Array containing the living nodes, followed by null
+	 */
+	public Node[] getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return Number of living nodes
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return Maximum number of living nodes
+	 */
+	public int getCapacity() {
+		return ages.length;
+	}
+
+	/**
+	 * @return Age of the node at the given index in frames
+	 */
+	public float getAge(int theIndex) {
+		return ages[theIndex];
+	}
+
+	/**
+	 * @return Lifetime of the node at the given index in frames
+	 */
+	public float getLifetime(int theIndex) {
+		return lifetimes[theIndex];
+	}
+
+	public float getRate() {
+		return rate;
+	}
+
+	public void setRate(float theRate) {
+		this.rate = theRate;
+	}
+
+	public void setLifetime(float theMinLifetime, float theMaxLifetime) {
+		this.minLifetime = theMinLifetime;
+		this.maxLifetime = theMaxLifetime;
+	}
+
+	public float getMinLifetime() {
+		return minLifetime;
+	}
+
+	public float getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	public float getSpread() {
+		return spread;
+	}
+
+	public void setSpread(float theSpread) {
+		this.spread = theSpread;
+	}
+
+	public PVector getVelocity() {
+		return velocity;
+	}
+
+	public void setVelocity(PVector theVelocity) {
+		this.velocity = theVelocity;
+	}
+
+	public float getVelocitySpread() {
+		return velocitySpread;
+	}
+
+	public void setVelocitySpread(float theVelocitySpread) {
+		this.velocitySpread = theVelocitySpread;
+	}
+
+	public boolean isFlat() {
+		return flat;
+	}
+
+	public void setFlat(boolean theFlat) {
+		this.flat = theFlat;
+	}
+
+	public Node getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(Node theTemplate) {
+		this.template = theTemplate;
+	}
+
+	/**
+	 * Sets the seed of the random generator, so the emitter spawns the same
+	 * nodes every time the sketch runs.
+	 */
+	public void setSeed(long theSeed) {
+		random.setSeed(theSeed);
+	}
+
+	public RandomSource getRandomSource() {
+		return random;
+	}
+
+	public void setRandomSource(RandomSource theRandomSource) {
+		this.random = theRandomSource;
+	}
+
+	// ------ statistics ------
+	/**
+	 * @return Ratio of living nodes to capacity (0 to 1)
+	 */
+	public float getOccupancy() {
+		return count / (float) Math.max(getCapacity(), 1);
+	}
+
+	/**
+	 * @return Number of nodes spawned in the last call of update()
+	 */
+	public int getFrameSpawns() {
+		return frameSpawns;
+	}
+
+	/**
+	 * @return Number of nodes killed in the last call of update()
+	 */
+	public int getFrameKills() {
+		return frameKills;
+	}
+
+	/**
+	 * @return Average number of spawned nodes per frame
+	 */
+	public float getSpawnRate() {
+		return frames == 0 ? 0 : spawnCount / (float) frames;
+	}
+
+	/**
+	 * @return Average number of killed nodes per frame
+	 */
+	public float getKillRate() {
+		return frames == 0 ? 0 : killCount / (float) frames;
+	}
+
+	/**
+	 * @return Total number of spawned nodes
+	 */
+	public long getSpawnCount() {
+		return spawnCount;
+	}
+
+	/**
+	 * @return Total number of killed nodes
+	 */
+	public long getKillCount() {
+		return killCount;
+	}
+
+	/**
+	 * @return Number of spawns that failed because all nodes were alive
+	 */
+	public long getFailedSpawnCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Resets all statistics.
+	 */
+	public void resetStatistics() {
+		frames = 0;
+		spawnCount = 0;
+		killCount = 0;
+		failedCount = 0;
+	}
+
+}
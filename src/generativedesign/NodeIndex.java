@@ -0,0 +1,551 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index for finding nodes quickly, e.g. the node under the mouse or
+ * all nodes inside a selection rectangle. Space is divided into cells of
+ * equal size and every node is stored in the cell it is in. Queries only
+ * look at the cells around the searched region instead of testing all nodes.
+ * <p>
+ * When nodes move, call update() once per frame. Only nodes that have moved
+ * into another cell are re-sorted.
+ * <p>
+ * All queries write the found nodes into an array given by the caller, so no
+ * new arrays are created. If the array has room left, the entry after the
+ * last found node is set to null, so the array can be passed directly to
+ * functions like Node.attract(Node[]).
+ * 
+ * <pre>
+ * NodeIndex index = new NodeIndex(nodes, 50);
+ * Node[] selection = new Node[1000];
+ * ...
+ * index.update();
+ * Node picked = index.nearest(mouseX, mouseY, 0, 20);
+ * int count = index.queryBox(x1, y1, -1000, x2, y2, 1000, selection);
+ * </pre>
+ */
+public class NodeIndex {
+
+	final static long EMPTY = Long.MIN_VALUE;
+	// cell coordinates are limited to 21 bits each
+	final static int CELL_LIMIT = (1 << 20) - 1;
+
+	// ------ private properties ------
+	Node[] nodes = new Node[0];
+	int nodeCount = 0;
+	float cellSize;
+
+	// hash table of the cells. cellHeads contains the first node of every
+	// cell, the other nodes of a cell are found via nodeNext. cells that
+	// become empty keep their key until the next rebuild, so cellsUsed
+	// counts them as well.
+	long[] cellKeys = new long[0];
+	int[] cellHeads = new int[0];
+	int cellsUsed = 0;
+
+	// slot of the cell for every node and double linked lists of the nodes
+	int[] nodeSlots = new int[0];
+	int[] nodeNext = new int[0];
+	int[] nodePrev = new int[0];
+
+	// range of used cell coordinates
+	int minCellX, minCellY, minCellZ, maxCellX, maxCellY, maxCellZ;
+
+	// buffers for nearest neighbor queries (max heap)
+	float[] heapDistances = new float[16];
+	int[] heapNodes = new int[16];
+
+	// ------ constructors ------
+	/**
+	 * @param theNodes
+	 *            Nodes to index. The array may be filled up with null at the
+	 *            end.
+	 * @param theCellSize
+	 *            Size of the cells. Should be about the size of typical
+	 *            queries, e.g. the diameter of the nodes.
+	 */
+	public NodeIndex(Node[] theNodes, float theCellSize) {
+		cellSize = Math.max(theCellSize, 1e-6f);
+		setNodes(theNodes);
+	}
+
+	// ------ building and updating ------
+	/**
+	 * Sets the nodes to index and sorts all of them into the cells.
+	 * 
+	 * @param theNodes
+	 *            Nodes to index. The array may be filled up with null at the
+	 *            end.
+	 */
+	public void setNodes(Node[] theNodes) {
+		nodes = theNodes;
+		nodeCount = 0;
+		while (nodeCount < nodes.length && nodes[nodeCount] != null)
+			nodeCount++;
+		rebuild(Math.max(16, Integer.highestOneBit(nodeCount) * 2));
+	}
+
+	void rebuild(int theCapacity) {
+		if (cellKeys.length != theCapacity) {
+			cellKeys = new long[theCapacity];
+			cellHeads = new int[theCapacity];
+		}
+		Arrays.fill(cellKeys, EMPTY);
+		Arrays.fill(cellHeads, -1);
+		cellsUsed = 0;
+		if (nodeSlots.length < nodeCount) {
+			nodeSlots = new int[nodeCount];
+			nodeNext = new int[nodeCount];
+			nodePrev = new int[nodeCount];
+		}
+
+		minCellX = minCellY = minCellZ = Integer.MAX_VALUE;
+		maxCellX = maxCellY = maxCellZ = Integer.MIN_VALUE;
+		for (int i = 0; i < nodeCount; i++) {
+			if (!insert(i, key(nodes[i]))) {
+				// already done by a rebuild with a larger hash table
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Re-sorts all nodes that have moved into another cell since the last
+	 * update. Call this every frame after the nodes have been moved.
+	 */
+	public void update() {
+		for (int i = 0; i < nodeCount; i++) {
+			long key = key(nodes[i]);
+			if (key != cellKeys[nodeSlots[i]]) {
+				remove(i);
+				if (!insert(i, key)) {
+					// the hash table has been enlarged and rebuilt
+					return;
+				}
+			}
+		}
+	}
+
+	// returns false if the hash table had to be rebuilt
+	boolean insert(int theNode, long theKey) {
+		int slot = slot(theKey);
+		if (cellKeys[slot] == EMPTY) {
+			if ((cellsUsed + 1) * 2 > cellKeys.length) {
+				// empty cells are dropped, so the table only grows if there
+				// are more cells with nodes
+				int cells = liveCells() + 1;
+				rebuild(Math.max(16, Integer.highestOneBit(cells) * 4));
+				return false;
+			}
+			cellKeys[slot] = theKey;
+			cellsUsed++;
+			updateCellRange(theKey);
+		}
+		int head = cellHeads[slot];
+		nodeNext[theNode] = head;
+		nodePrev[theNode] = -1;
+		if (head >= 0)
+			nodePrev[head] = theNode;
+		cellHeads[slot] = theNode;
+		nodeSlots[theNode] = slot;
+		return true;
+	}
+
+	int liveCells() {
+		int count = 0;
+		for (int i = 0; i < cellHeads.length; i++) {
+			if (cellHeads[i] >= 0)
+				count++;
+		}
+		return count;
+	}
+
+	void remove(int theNode) {
+		int prev = nodePrev[theNode];
+		int next = nodeNext[theNode];
+		if (prev >= 0) {
+			nodeNext[prev] = next;
+		} else {
+			cellHeads[nodeSlots[theNode]] = next;
+		}
+		if (next >= 0)
+			nodePrev[next] = prev;
+	}
+
+	void updateCellRange(long theKey) {
+		int cx = cellX(theKey), cy = cellY(theKey), cz = cellZ(theKey);
+		minCellX = Math.min(minCellX, cx);
+		minCellY = Math.min(minCellY, cy);
+		minCellZ = Math.min(minCellZ, cz);
+		maxCellX = Math.max(maxCellX, cx);
+		maxCellY = Math.max(maxCellY, cy);
+		maxCellZ = Math.max(maxCellZ, cz);
+	}
+
+	// ------ queries ------
+	/**
+	 * Finds the node that is nearest to the given position.
+	 * 
+	 * @return Nearest node or null if there are no nodes
+	 */
+	public Node nearest(float theX, float theY, float theZ) {
+		return nearest(theX, theY, theZ, Float.MAX_VALUE);
+	}
+
+	/**
+	 * Finds the node that is nearest to the given position, but not farther
+	 * away than theMaxDistance. Useful for picking a node with the mouse.
+	 * 
+	 * @return Nearest node or null if there is no node within theMaxDistance
+	 */
+	public Node nearest(float theX, float theY, float theZ,
+			float theMaxDistance) {
+		int count = nearest(theX, theY, theZ, 1, theMaxDistance);
+		return count > 0 ? nodes[heapNodes[0]] : null;
+	}
+
+	/**
+	 * Finds the k nodes that are nearest to the given position.
+	 * 
+	 * @param theResult
+	 *            Array for the found nodes, sorted by distance. At most
+	 *            theResult.length nodes are searched.
+	 * @return Number of nodes written to theResult
+	 */
+	public int queryNearest(float theX, float theY, float theZ,
+			Node[] theResult) {
+		return queryNearest(theX, theY, theZ, theResult.length,
+				Float.MAX_VALUE, theResult);
+	}
+
+	/**
+	 * Finds the k nodes that are nearest to the given position and not
+	 * farther away than theMaxDistance.
+	 * 
+	 * @param theK
+	 *            Number of nodes to search
+	 * @param theMaxDistance
+	 *            Maximum distance of the nodes
+	 * @param theResult
+	 *            Array for the found nodes, sorted by distance
+	 * @return Number of nodes written to theResult
+	 */
+	public int queryNearest(float theX, float theY, float theZ, int theK,
+			float theMaxDistance, Node[] theResult) {
+		int k = Math.min(theK, theResult.length);
+		int count = nearest(theX, theY, theZ, k, theMaxDistance);
+
+		// the heap has the farthest node on top, so take them out from
+		// behind
+		for (int i = count - 1; i >= 0; i--) {
+			theResult[i] = nodes[heapNodes[0]];
+			heapPop(i + 1);
+		}
+		return terminate(theResult, count);
+	}
+
+	// fills the heap with the k nearest nodes, returns their number
+	int nearest(float theX, float theY, float theZ, int theK,
+			float theMaxDistance) {
+		if (theK <= 0 || nodeCount == 0)
+			return 0;
+		if (heapNodes.length < theK) {
+			heapNodes = new int[theK];
+			heapDistances = new float[theK];
+		}
+
+		float maxDistance2 = theMaxDistance < Float.MAX_VALUE ? theMaxDistance
+				* theMaxDistance : Float.MAX_VALUE;
+		int count = 0;
+		int cx = cell(theX), cy = cell(theY), cz = cell(theZ);
+
+		// search in growing shells of cells around the position
+		for (int r = 0;; r++) {
+			// all cells of this shell are at least this far away
+			float shellDistance = (r - 1) * cellSize;
+			if (r > 0) {
+				float limit = count == theK ? heapDistances[0] : maxDistance2;
+				if (shellDistance > 0 && shellDistance * shellDistance > limit)
+					break;
+			}
+			if (cx - r < minCellX && cx + r > maxCellX && cy - r < minCellY
+					&& cy + r > maxCellY && cz - r < minCellZ
+					&& cz + r > maxCellZ)
+				break;
+
+			int z0 = Math.max(cz - r, minCellZ);
+			int z1 = Math.min(cz + r, maxCellZ);
+			int y0 = Math.max(cy - r, minCellY);
+			int y1 = Math.min(cy + r, maxCellY);
+			int x0 = Math.max(cx - r, minCellX);
+			int x1 = Math.min(cx + r, maxCellX);
+			for (int iz = z0; iz <= z1; iz++) {
+				boolean zShell = iz == cz - r || iz == cz + r;
+				for (int iy = y0; iy <= y1; iy++) {
+					boolean yShell = zShell || iy == cy - r || iy == cy + r;
+					for (int ix = x0; ix <= x1; ix++) {
+						// only visit the cells on the surface of the shell
+						if (!yShell && ix != cx - r && ix != cx + r) {
+							ix = Math.max(ix, cx + r - 1);
+							continue;
+						}
+						int slot = find(key(ix, iy, iz));
+						if (slot < 0)
+							continue;
+						for (int i = cellHeads[slot]; i >= 0; i = nodeNext[i]) {
+							float d2 = distance2(nodes[i], theX, theY, theZ);
+							if (d2 > maxDistance2)
+								continue;
+							if (count < theK) {
+								heapPush(count++, i, d2);
+							} else if (d2 < heapDistances[0]) {
+								heapPop(count);
+								heapPush(count - 1, i, d2);
+							}
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds all nodes within theRadius around the given position.
+	 * 
+	 * @param theResult
+	 *            Array for the found nodes. Searching stops when it is full.
+	 * @return Number of nodes written to theResult
+	 */
+	public int queryRadius(float theX, float theY, float theZ,
+			float theRadius, Node[] theResult) {
+		float r2 = theRadius * theRadius;
+		int x0 = Math.max(cell(theX - theRadius), minCellX);
+		int y0 = Math.max(cell(theY - theRadius), minCellY);
+		int z0 = Math.max(cell(theZ - theRadius), minCellZ);
+		int x1 = Math.min(cell(theX + theRadius), maxCellX);
+		int y1 = Math.min(cell(theY + theRadius), maxCellY);
+		int z1 = Math.min(cell(theZ + theRadius), maxCellZ);
+
+		int count = 0;
+		if (cellCount(x0, y0, z0, x1, y1, z1) > nodeCount) {
+			// more cells than nodes, so it's faster to test all nodes
+			for (int i = 0; i < nodeCount && count < theResult.length; i++) {
+				if (distance2(nodes[i], theX, theY, theZ) <= r2)
+					theResult[count++] = nodes[i];
+			}
+			return terminate(theResult, count);
+		}
+
+		for (int iz = z0; iz <= z1; iz++) {
+			for (int iy = y0; iy <= y1; iy++) {
+				for (int ix = x0; ix <= x1; ix++) {
+					int slot = find(key(ix, iy, iz));
+					if (slot < 0)
+						continue;
+					for (int i = cellHeads[slot]; i >= 0; i = nodeNext[i]) {
+						if (distance2(nodes[i], theX, theY, theZ) <= r2) {
+							if (count == theResult.length)
+								return count;
+							theResult[count++] = nodes[i];
+						}
+					}
+				}
+			}
+		}
+		return terminate(theResult, count);
+	}
+
+	/**
+	 * Finds all nodes inside the given box.
+	 * 
+	 * @param theResult
+	 *            Array for the found nodes. Searching stops when it is full.
+	 * @return Number of nodes written to theResult
+	 */
+	public int queryBox(float theMinX, float theMinY, float theMinZ,
+			float theMaxX, float theMaxY, float theMaxZ, Node[] theResult) {
+		int x0 = Math.max(cell(theMinX), minCellX);
+		int y0 = Math.max(cell(theMinY), minCellY);
+		int z0 = Math.max(cell(theMinZ), minCellZ);
+		int x1 = Math.min(cell(theMaxX), maxCellX);
+		int y1 = Math.min(cell(theMaxY), maxCellY);
+		int z1 = Math.min(cell(theMaxZ), maxCellZ);
+
+		int count = 0;
+		if (cellCount(x0, y0, z0, x1, y1, z1) > nodeCount) {
+			for (int i = 0; i < nodeCount && count < theResult.length; i++) {
+				Node n = nodes[i];
+				if (n.x >= theMinX && n.x <= theMaxX && n.y >= theMinY
+						&& n.y <= theMaxY && n.z >= theMinZ && n.z <= theMaxZ)
+					theResult[count++] = n;
+			}
+			return terminate(theResult, count);
+		}
+
+		for (int iz = z0; iz <= z1; iz++) {
+			for (int iy = y0; iy <= y1; iy++) {
+				for (int ix = x0; ix <= x1; ix++) {
+					int slot = find(key(ix, iy, iz));
+					if (slot < 0)
+						continue;
+					for (int i = cellHeads[slot]; i >= 0; i = nodeNext[i]) {
+						Node n = nodes[i];
+						if (n.x >= theMinX && n.x <= theMaxX && n.y >= theMinY
+								&& n.y <= theMaxY && n.z >= theMinZ
+								&& n.z <= theMaxZ) {
+							if (count == theResult.length)
+								return count;
+							theResult[count++] = n;
+						}
+					}
+				}
+			}
+		}
+		return terminate(theResult, count);
+	}
+
+	// ------ helpers ------
+	static int terminate(Node[] theResult, int theCount) {
+		if (theCount < theResult.length)
+			theResult[theCount] = null;
+		return theCount;
+	}
+
+	static float distance2(Node theNode, float theX, float theY, float theZ) {
+		float dx = theNode.x - theX;
+		float dy = theNode.y - theY;
+		float dz = theNode.z - theZ;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	static long cellCount(int x0, int y0, int z0, int x1, int y1, int z1) {
+		if (x1 < x0 || y1 < y0 || z1 < z0)
+			return 0;
+		return (long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+	}
+
+	int cell(float theValue) {
+		float c = (float) Math.floor(theValue / cellSize);
+		if (c > CELL_LIMIT)
+			return CELL_LIMIT;
+		if (c < -CELL_LIMIT)
+			return -CELL_LIMIT;
+		return (int) c;
+	}
+
+	long key(Node theNode) {
+		return key(cell(theNode.x), cell(theNode.y), cell(theNode.z));
+	}
+
+	static long key(int theX, int theY, int theZ) {
+		return ((long) (theX & 0x1FFFFF) << 42)
+				| ((long) (theY & 0x1FFFFF) << 21) | (theZ & 0x1FFFFF);
+	}
+
+	static int cellX(long theKey) {
+		return ((int) (theKey >> 42) << 11) >> 11;
+	}
+
+	static int cellY(long theKey) {
+		return ((int) (theKey >> 21) << 11) >> 11;
+	}
+
+	static int cellZ(long theKey) {
+		return ((int) theKey << 11) >> 11;
+	}
+
+	// slot of the cell or the empty slot where it would be inserted
+	int slot(long theKey) {
+		int mask = cellKeys.length - 1;
+		long h = theKey * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h >>> 40) & mask;
+		while (cellKeys[slot] != theKey && cellKeys[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// slot of the cell or -1 if the cell is empty
+	int find(long theKey) {
+		int slot = slot(theKey);
+		return cellKeys[slot] == EMPTY ? -1 : slot;
+	}
+
+	void heapPush(int theSize, int theNode, float theDistance2) {
+		int i = theSize;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (heapDistances[parent] >= theDistance2)
+				break;
+			heapDistances[i] = heapDistances[parent];
+			heapNodes[i] = heapNodes[parent];
+			i = parent;
+		}
+		heapDistances[i] = theDistance2;
+		heapNodes[i] = theNode;
+	}
+
+	// removes the top of a heap of the given size
+	void heapPop(int theSize) {
+		int last = theSize - 1;
+		float d = heapDistances[last];
+		int n = heapNodes[last];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= last)
+				break;
+			if (child + 1 < last
+					&& heapDistances[child + 1] > heapDistances[child])
+				child++;
+			if (heapDistances[child] <= d)
+				break;
+			heapDistances[i] = heapDistances[child];
+			heapNodes[i] = heapNodes[child];
+			i = child;
+		}
+		heapDistances[i] = d;
+		heapNodes[i] = n;
+	}
+
+	// ------ getters and setters ------
+	public Node[] getNodes() {
+		return nodes;
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Changes the size of the cells and sorts all nodes again.
+	 */
+	public void setCellSize(float theCellSize) {
+		cellSize = Math.max(theCellSize, 1e-6f);
+		rebuild(cellKeys.length);
+	}
+
+}
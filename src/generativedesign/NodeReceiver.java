@@ -0,0 +1,290 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives the positions of nodes sent by a NodeBroadcaster. Receiving is done
+ * by a background thread, read() copies the latest received frame into the
+ * nodes of the sketch.
+ * 
+ * <pre>
+ * receiver = new NodeReceiver("localhost", 12000);
+ * ...
+ * receiver.read(nodes); // in draw()
+ * </pre>
+ */
+public class NodeReceiver {
+
+	// ------ private properties ------
+	SocketChannel channel;
+	Thread thread;
+	volatile boolean connected = false;
+
+	// triple buffering: the receive thread fills receiveBuffer, read() uses
+	// readBuffer, latestBuffer is the latest complete frame
+	ByteBuffer header = NodeBroadcaster.allocate(NodeBroadcaster.HEADER_SIZE);
+	ByteBuffer receiveBuffer, latestBuffer, readBuffer;
+	boolean available = false;
+	final Object lock = new Object();
+
+	// header of the frame in readBuffer
+	int nodeCount = 0;
+	long sequence = 0;
+	float minX, minY, minZ, stepX, stepY, stepZ;
+
+	// statistics
+	volatile long receivedFrames = 0, receivedBytes = 0;
+	long readFrames = 0, skippedFrames = 0;
+	float latency = 0;
+
+	// ------ constructors ------
+	/**
+	 * Connects to a NodeBroadcaster.
+	 * 
+	 * @param theHost
+	 *            Name or address of the computer running the broadcaster,
+	 *            e.g. "localhost"
+	 * @param thePort
+	 *            Port of the broadcaster
+	 */
+	public NodeReceiver(String theHost, int thePort) {
+		receiveBuffer = NodeBroadcaster.allocate(0);
+		latestBuffer = NodeBroadcaster.allocate(0);
+		readBuffer = NodeBroadcaster.allocate(0);
+
+		try {
+			channel = SocketChannel.open(new InetSocketAddress(theHost,
+					thePort));
+		} catch (IOException e) {
+			System.out.println(theHost + ":" + thePort + " not accessible");
+			return;
+		}
+		connected = true;
+
+		thread = new Thread("NodeReceiver") {
+			@Override
+			public void run() {
+				receiveFrames();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// runs in the receive thread
+	void receiveFrames() {
+		try {
+			while (connected) {
+				header.clear();
+				fill(header);
+				int size = NodeBroadcaster.HEADER_SIZE + header.getInt(4) * 6;
+				if (header.getInt(0) != NodeBroadcaster.MAGIC || size < 0) {
+					System.out.println("invalid data received");
+					break;
+				}
+
+				if (receiveBuffer.capacity() < size) {
+					receiveBuffer = NodeBroadcaster.allocate(size);
+				}
+				receiveBuffer.clear();
+				header.flip();
+				receiveBuffer.put(header);
+				receiveBuffer.limit(size);
+				fill(receiveBuffer);
+				receiveBuffer.flip();
+
+				synchronized (lock) {
+					ByteBuffer b = latestBuffer;
+					latestBuffer = receiveBuffer;
+					receiveBuffer = b;
+					available = true;
+				}
+				receivedFrames++;
+				receivedBytes += size;
+			}
+		} catch (IOException e) {
+			// connection closed
+		}
+		connected = false;
+		NodeBroadcaster.close(channel);
+	}
+
+	void fill(ByteBuffer theBuffer) throws IOException {
+		while (theBuffer.hasRemaining()) {
+			if (channel.read(theBuffer) < 0)
+				throw new EOFException();
+		}
+	}
+
+	// ------ reading ------
+	/**
+	 * Sets the positions of the nodes to the latest received frame. Does
+	 * nothing if no new frame has been received since the last call.
+	 * 
+	 * @param theNodes
+	 *            Nodes to set. Stops at the end of the array, at the first
+	 *            null or after the number of nodes in the frame.
+	 * @return true, if a new frame was read
+	 */
+	public boolean read(Node[] theNodes) {
+		if (!swap())
+			return false;
+
+		int count = Math.min(theNodes.length, nodeCount);
+		int offset = NodeBroadcaster.HEADER_SIZE;
+		for (int i = 0; i < count; i++) {
+			Node node = theNodes[i];
+			if (node == null)
+				break;
+			node.x = minX + (readBuffer.getShort(offset) & 0xFFFF) * stepX;
+			node.y = minY + (readBuffer.getShort(offset + 2) & 0xFFFF) * stepY;
+			node.z = minZ + (readBuffer.getShort(offset + 4) & 0xFFFF) * stepZ;
+			offset += 6;
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the latest received frame into an array of positions (x, y and z
+	 * for every node).
+	 * 
+	 * @param thePositions
+	 *            Array for the positions
+	 * @return true, if a new frame was read
+	 */
+	public boolean read(float[] thePositions) {
+		if (!swap())
+			return false;
+
+		int count = Math.min(thePositions.length / 3, nodeCount);
+		int offset = NodeBroadcaster.HEADER_SIZE;
+		for (int i = 0; i < count * 3; i += 3) {
+			thePositions[i] = minX + (readBuffer.getShort(offset) & 0xFFFF)
+					* stepX;
+			thePositions[i + 1] = minY
+					+ (readBuffer.getShort(offset + 2) & 0xFFFF) * stepY;
+			thePositions[i + 2] = minZ
+					+ (readBuffer.getShort(offset + 4) & 0xFFFF) * stepZ;
+			offset += 6;
+		}
+		return true;
+	}
+
+	// takes over the latest frame and reads its header
+	boolean swap() {
+		synchronized (lock) {
+			if (!available)
+				return false;
+			ByteBuffer b = readBuffer;
+			readBuffer = latestBuffer;
+			latestBuffer = b;
+			available = false;
+		}
+
+		ByteBuffer b = readBuffer;
+		nodeCount = b.getInt(4);
+		long s = b.getLong(8);
+		if (readFrames > 0 && s > sequence + 1) {
+			skippedFrames += s - sequence - 1;
+		}
+		sequence = s;
+		// System.nanoTime() uses the same clock for all programs on one
+		// computer, so this is only meaningful for local broadcasters
+		float ms = (System.nanoTime() - b.getLong(16)) / 1e6f;
+		latency = readFrames == 0 ? ms : latency * 0.9f + ms * 0.1f;
+		readFrames++;
+
+		minX = b.getFloat(24);
+		minY = b.getFloat(28);
+		minZ = b.getFloat(32);
+		stepX = TrajectoryReader.step(minX, b.getFloat(36));
+		stepY = TrajectoryReader.step(minY, b.getFloat(40));
+		stepZ = TrajectoryReader.step(minZ, b.getFloat(44));
+		return true;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		connected = false;
+		if (channel != null)
+			NodeBroadcaster.close(channel);
+	}
+
+	// ------ getters ------
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * @return Number of nodes in the last read frame
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return Sequence number of the last read frame
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Number of frames received by the background thread
+	 */
+	public long getReceivedFrames() {
+		return receivedFrames;
+	}
+
+	/**
+	 * @return Number of bytes received
+	 */
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	/**
+	 * @return Number of frames that were published by the broadcaster but not
+	 *         read, because the broadcaster or read() skipped them
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * @return Average time in milliseconds between publishing and reading a
+	 *         frame. Only valid if broadcaster and receiver run on the same
+	 *         computer.
+	 */
+	public float getLatency() {
+		return latency;
+	}
+
+}
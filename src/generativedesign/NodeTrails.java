@@ -0,0 +1,349 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Stores the last positions of many nodes for drawing motion trails. Instead
+ * of a list of vectors per node, all positions are kept in one large direct
+ * buffer outside of the Java heap, used as a ring: every call of record()
+ * overwrites the oldest position of every trail. Nothing is allocated while
+ * recording or drawing.
+ * <p>
+ * Trails are addressed by slot, which is the index of the node in the array
+ * passed to record(). A cursor walks through the positions of one trail from
+ * the oldest to the newest:
+ * 
+ * <pre>
+ * NodeTrails trails = new NodeTrails(nodes.length, 100);
+ * NodeTrails.Cursor cursor = trails.cursor();
+ * ...
+ * trails.record(nodes);
+ * for (int i = 0; i &lt; nodes.length; i++) {
+ *   beginShape();
+ *   cursor.begin(i);
+ *   while (cursor.next()) vertex(cursor.x, cursor.y);
+ *   endShape();
+ * }
+ * </pre>
+ * 
+ * If a slot gets a new node (e.g. when a NodeEmitter recycles a node), call
+ * clear() for that slot, so the new trail doesn't start at the old position.
+ */
+public class NodeTrails {
+
+	// ------ private properties ------
+	int slotCount;
+	int length;
+	int capacity;
+	int dimensions;
+
+	// positions of all trails: slot after slot, capacity positions each
+	FloatBuffer positions;
+
+	// ring position that is written next and number of valid positions
+	int head = 0;
+	int filled = 0;
+	// number of calls of record() and the frame when each trail was started
+	int frame = 0;
+	int[] starts;
+
+	// ------ constructors ------
+	/**
+	 * @param theSlotCount
+	 *            Maximum number of trails (nodes)
+	 * @param theLength
+	 *            Number of positions per trail
+	 */
+	public NodeTrails(int theSlotCount, int theLength) {
+		this(theSlotCount, theLength, false);
+	}
+
+	/**
+	 * @param theSlotCount
+	 *            Maximum number of trails (nodes)
+	 * @param theLength
+	 *            Number of positions per trail
+	 * @param theFlat
+	 *            true to store only x and y, which saves a third of the memory
+	 */
+	public NodeTrails(int theSlotCount, int theLength, boolean theFlat) {
+		slotCount = theSlotCount;
+		dimensions = theFlat ? 2 : 3;
+		length = Math.max(theLength, 1);
+		capacity = length;
+		positions = allocate(slotCount, capacity, dimensions);
+		starts = new int[slotCount];
+	}
+
+	static FloatBuffer allocate(int theSlotCount, int theCapacity,
+			int theDimensions) {
+		long bytes = (long) theSlotCount * theCapacity * theDimensions * 4;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("trails too large: " + bytes
+					+ " bytes");
+		}
+		return ByteBuffer.allocateDirect((int) bytes)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	// ------ recording ------
+	/**
+	 * Adds the current position of every node to its trail. Slots without a
+	 * node (the array is shorter or filled up with null) are cleared.
+	 * 
+	 * @param theNodes
+	 *            Nodes to record, one per slot
+	 */
+	public void record(Node[] theNodes) {
+		int count = Math.min(theNodes.length, slotCount);
+		int stride = capacity * dimensions;
+		int offset = head * dimensions;
+		for (int i = 0; i < count; i++) {
+			Node node = theNodes[i];
+			if (node == null) {
+				count = i;
+				break;
+			}
+			positions.put(offset, node.x);
+			positions.put(offset + 1, node.y);
+			if (dimensions == 3)
+				positions.put(offset + 2, node.z);
+			offset += stride;
+		}
+		advance();
+		for (int i = count; i < slotCount; i++) {
+			starts[i] = frame;
+		}
+	}
+
+	/**
+	 * Adds a position to one trail. Use this together with nextFrame(), if the
+	 * positions don't come from an array of nodes.
+	 * 
+	 * @param theSlot
+	 *            Index of the trail
+	 * @param theX
+	 *            X-coordinate
+	 * @param theY
+	 *            Y-coordinate
+	 * @param theZ
+	 *            Z-coordinate (ignored for flat trails)
+	 */
+	public void set(int theSlot, float theX, float theY, float theZ) {
+		int offset = (theSlot * capacity + head) * dimensions;
+		positions.put(offset, theX);
+		positions.put(offset + 1, theY);
+		if (dimensions == 3)
+			positions.put(offset + 2, theZ);
+	}
+
+	/**
+	 * Finishes a frame of positions written with set(). Trails that didn't
+	 * get a position have an undefined newest position, so clear them or set
+	 * all of them.
+	 */
+	public void nextFrame() {
+		advance();
+	}
+
+	void advance() {
+		head = (head + 1) % capacity;
+		if (filled < capacity)
+			filled++;
+		frame++;
+	}
+
+	/**
+	 * Removes all positions of one trail.
+	 * 
+	 * @param theSlot
+	 *            Index of the trail
+	 */
+	public void clear(int theSlot) {
+		starts[theSlot] = frame;
+	}
+
+	/**
+	 * Removes the positions of all trails.
+	 */
+	public void clear() {
+		for (int i = 0; i < slotCount; i++) {
+			starts[i] = frame;
+		}
+	}
+
+	// ------ reading ------
+	/**
+	 * @param theSlot
+	 *            Index of the trail
+	 * @return Number of positions in this trail
+	 */
+	public int getCount(int theSlot) {
+		return Math.min(Math.min(frame - starts[theSlot], filled), length);
+	}
+
+	/**
+	 * Copies one position of a trail into the given array.
+	 * 
+	 * @param theSlot
+	 *            Index of the trail
+	 * @param theAge
+	 *            0 for the newest position, getCount(theSlot) - 1 for the
+	 *            oldest
+	 * @param theResult
+	 *            Array of at least 2 (flat) or 3 floats
+	 */
+	public void get(int theSlot, int theAge, float[] theResult) {
+		int ring = (head - 1 - theAge + capacity) % capacity;
+		int offset = (theSlot * capacity + ring) * dimensions;
+		for (int i = 0; i < dimensions; i++) {
+			theResult[i] = positions.get(offset + i);
+		}
+	}
+
+	/**
+	 * @return A new cursor for walking through the trails. Create it once
+	 *         and reuse it for all trails and frames.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Walks through the positions of one trail from the oldest to the newest
+	 * without allocating anything.
+	 */
+	public class Cursor {
+		/**
+		 * Current position (z is 0 for flat trails)
+		 */
+		public float x, y, z;
+		/**
+		 * Age of the current position: 0 for the newest
+		 */
+		public int age;
+
+		int offset;
+		int ring;
+		int remaining;
+
+		/**
+		 * Starts at the oldest position of a trail. Call next() to get it.
+		 * 
+		 * @param theSlot
+		 *            Index of the trail
+		 */
+		public void begin(int theSlot) {
+			remaining = getCount(theSlot);
+			offset = theSlot * capacity;
+			ring = (head - remaining + capacity) % capacity;
+			age = remaining;
+		}
+
+		/**
+		 * Moves to the next position.
+		 * 
+		 * @return false if there are no more positions
+		 */
+		public boolean next() {
+			if (remaining == 0)
+				return false;
+			int i = (offset + ring) * dimensions;
+			x = positions.get(i);
+			y = positions.get(i + 1);
+			z = dimensions == 3 ? positions.get(i + 2) : 0;
+			ring = ring + 1 == capacity ? 0 : ring + 1;
+			remaining--;
+			age = remaining;
+			return true;
+		}
+	}
+
+	// ------ getters and setters ------
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Changes the number of positions per trail. Shorter trails keep the
+	 * memory, so the length can be changed back without allocating. Only if
+	 * the trails get longer than ever before, one new buffer for all trails
+	 * is allocated and the recorded positions are copied.
+	 * 
+	 * @param theLength
+	 *            Number of positions per trail
+	 */
+	public void setLength(int theLength) {
+		theLength = Math.max(theLength, 1);
+		if (theLength > capacity) {
+			grow(theLength);
+		}
+		length = theLength;
+	}
+
+	void grow(int theCapacity) {
+		FloatBuffer old = positions;
+		FloatBuffer grown = allocate(slotCount, theCapacity, dimensions);
+
+		// unroll the rings, so that the oldest position is at index 0
+		for (int slot = 0; slot < slotCount; slot++) {
+			for (int k = 0; k < filled; k++) {
+				int ring = (head - filled + k + capacity) % capacity;
+				int from = (slot * capacity + ring) * dimensions;
+				int to = (slot * theCapacity + k) * dimensions;
+				for (int i = 0; i < dimensions; i++) {
+					grown.put(to + i, old.get(from + i));
+				}
+			}
+		}
+		positions = grown;
+		capacity = theCapacity;
+		head = filled % capacity;
+	}
+
+	/**
+	 * @return Number of positions that fit into the buffer per trail
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public boolean isFlat() {
+		return dimensions == 2;
+	}
+
+	/**
+	 * @return Size of the buffer in bytes
+	 */
+	public long getByteCount() {
+		return (long) slotCount * capacity * dimensions * 4;
+	}
+
+}
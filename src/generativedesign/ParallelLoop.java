@@ -0,0 +1,89 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Helper for loops whose iterations are independent of each other. The index
+ * range is split into chunks which are processed by the common fork-join pool.
+ * If the loop is started from a task of another fork-join pool, that pool is
+ * used instead. Small ranges are processed directly in the calling thread.
+ */
+abstract class ParallelLoop {
+
+	/**
+	 * Processes the indices from theStart (inclusive) to theEnd (exclusive).
+	 */
+	abstract void run(int theStart, int theEnd);
+
+	/**
+	 * Runs the loop for the given range.
+	 * 
+	 * @param theStart
+	 *            First index
+	 * @param theEnd
+	 *            Index after the last one
+	 * @param theChunkSize
+	 *            Minimum number of indices processed by one task
+	 * @param theParallel
+	 *            If false, the whole range is processed in the calling thread
+	 */
+	void execute(int theStart, int theEnd, int theChunkSize,
+			boolean theParallel) {
+		ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask
+				.getPool() : ForkJoinPool.commonPool();
+		if (!theParallel || theEnd - theStart <= theChunkSize
+				|| pool.getParallelism() < 2) {
+			run(theStart, theEnd);
+		} else if (ForkJoinTask.inForkJoinPool()) {
+			new Chunk(theStart, theEnd, Math.max(theChunkSize, 1)).invoke();
+		} else {
+			pool.invoke(new Chunk(theStart, theEnd, Math.max(theChunkSize, 1)));
+		}
+	}
+
+	class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		int start, end, chunkSize;
+
+		Chunk(int theStart, int theEnd, int theChunkSize) {
+			start = theStart;
+			end = theEnd;
+			chunkSize = theChunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= chunkSize) {
+				run(start, end);
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new Chunk(start, middle, chunkSize), new Chunk(
+						middle, end, chunkSize));
+			}
+		}
+	}
+
+}
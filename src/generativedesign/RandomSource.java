@@ -0,0 +1,205 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fast random numbers for the classes of this library. Every object that
+ * needs random numbers has its own source, which can be seeded to get the
+ * same results every time a sketch runs. Unlike PApplet.random() and
+ * Math.random(), there is no lock shared by all threads.
+ * <p>
+ * A source must only be used by one thread at a time. For parallel loops,
+ * use stream() to get one source per row, chunk, etc. The numbers then don't
+ * depend on which thread handles which part. For code that has no source of
+ * its own, local() returns a separate source for every thread.
+ * <p>
+ * Sources that are created without a seed get one from a global generator.
+ * After setGlobalSeed(), these seeds are reproducible as well, as long as the
+ * sources are created in the same order.
+ */
+public class RandomSource {
+
+	static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+	// ------ global state ------
+	static SplittableRandom seeds = new SplittableRandom();
+
+	static ThreadLocal<RandomSource> locals = new ThreadLocal<RandomSource>() {
+		protected RandomSource initialValue() {
+			return new RandomSource();
+		}
+	};
+
+	// ------ private properties ------
+	long seed;
+	SplittableRandom random;
+
+	// ------ constructors ------
+	/**
+	 * Creates a source with a seed from the global generator.
+	 */
+	public RandomSource() {
+		this(nextSeed());
+	}
+
+	/**
+	 * @param theSeed
+	 *            Seed of the source
+	 */
+	public RandomSource(long theSeed) {
+		setSeed(theSeed);
+	}
+
+	static synchronized long nextSeed() {
+		return seeds.nextLong();
+	}
+
+	// ------ global functions ------
+	/**
+	 * Makes the seeds of all sources created from now on without a seed
+	 * reproducible.
+	 * 
+	 * @param theSeed
+	 *            Seed of the global generator
+	 */
+	public static synchronized void setGlobalSeed(long theSeed) {
+		seeds = new SplittableRandom(theSeed);
+	}
+
+	/**
+	 * @return The source of the calling thread
+	 */
+	public static RandomSource local() {
+		return locals.get();
+	}
+
+	// ------ random numbers ------
+	/**
+	 * @return Random float between 0 (inclusive) and 1 (exclusive)
+	 */
+	public float nextFloat() {
+		return (random.nextInt() >>> 8) * 0x1.0p-24f;
+	}
+
+	/**
+	 * @return Random double between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double nextDouble() {
+		return random.nextDouble();
+	}
+
+	public int nextInt() {
+		return random.nextInt();
+	}
+
+	public long nextLong() {
+		return random.nextLong();
+	}
+
+	public boolean nextBoolean() {
+		return random.nextBoolean();
+	}
+
+	/**
+	 * @param theHigh
+	 *            Upper limit
+	 * @return Random float between 0 and theHigh, like PApplet.random()
+	 */
+	public float random(float theHigh) {
+		return random(0, theHigh);
+	}
+
+	/**
+	 * @param theLow
+	 *            Lower limit
+	 * @param theHigh
+	 *            Upper limit
+	 * @return Random float between theLow and theHigh, like PApplet.random().
+	 *         If theLow is not smaller than theHigh, theLow is returned.
+	 */
+	public float random(float theLow, float theHigh) {
+		if (theLow >= theHigh)
+			return theLow;
+		float value = theLow + nextFloat() * (theHigh - theLow);
+		// rounding may hit the upper limit
+		return value < theHigh ? value : theLow;
+	}
+
+	/**
+	 * @param theBound
+	 *            Upper limit (exclusive), must be positive
+	 * @return Random int between 0 and theBound - 1
+	 */
+	public int randomInt(int theBound) {
+		return random.nextInt(theBound);
+	}
+
+	// ------ streams ------
+	/**
+	 * Creates a new, independent source and advances this one. Use this to
+	 * hand a source to another object or thread.
+	 * 
+	 * @return New source
+	 */
+	public RandomSource split() {
+		return new RandomSource(random.nextLong());
+	}
+
+	/**
+	 * Returns a source that only depends on the seed of this source and the
+	 * given index. Calling stream(5) twice gives the same numbers, no matter
+	 * how many numbers this source has returned in between.
+	 * 
+	 * @param theIndex
+	 *            Number of the stream, e.g. the row of a grid
+	 * @return New source
+	 */
+	public RandomSource stream(long theIndex) {
+		return new RandomSource(mix(seed + (theIndex + 1) * GOLDEN));
+	}
+
+	// finalizer of splitmix64
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	// ------ getters and setters ------
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Restarts the source with the given seed.
+	 * 
+	 * @param theSeed
+	 *            Seed of the source
+	 */
+	public void setSeed(long theSeed) {
+		seed = theSeed;
+		random = new SplittableRandom(theSeed);
+	}
+
+}
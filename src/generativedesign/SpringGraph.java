@@ -0,0 +1,100 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Index based representation of a set of springs, shared by the spring
+ * solvers. Every node attached to a spring gets an index, and for every node
+ * the springs attached to it are listed.
+ */
+class SpringGraph {
+
+	Spring[] springs;
+	int springCount;
+	// all nodes attached to at least one spring
+	Node[] nodes;
+	// indices of the nodes of every spring
+	int[] fromIndex, toIndex;
+	// springs of node n: nodeSprings[nodeStart[n]] to nodeSprings[nodeStart[n
+	// + 1] - 1]. spring index * 2, lowest bit: 0 = from node, 1 = to node
+	int[] nodeStart, nodeSprings;
+
+	/**
+	 * @param theSprings
+	 *            Array of springs. The array may be filled up with null at the
+	 *            end.
+	 */
+	SpringGraph(Spring[] theSprings) {
+		springs = theSprings;
+		springCount = 0;
+		while (springCount < springs.length && springs[springCount] != null)
+			springCount++;
+
+		// give every node an index
+		IdentityHashMap<Node, Integer> indices = new IdentityHashMap<Node, Integer>();
+		Node[] nodeList = new Node[Math.max(springCount, 16)];
+		fromIndex = new int[springCount];
+		toIndex = new int[springCount];
+		for (int i = 0; i < springCount; i++) {
+			Node[] ends = { springs[i].fromNode, springs[i].toNode };
+			for (int e = 0; e < 2; e++) {
+				Integer index = indices.get(ends[e]);
+				if (index == null) {
+					index = indices.size();
+					indices.put(ends[e], index);
+					if (index >= nodeList.length) {
+						Node[] tmp = new Node[nodeList.length * 2];
+						System.arraycopy(nodeList, 0, tmp, 0, nodeList.length);
+						nodeList = tmp;
+					}
+					nodeList[index] = ends[e];
+				}
+				if (e == 0) {
+					fromIndex[i] = index;
+				} else {
+					toIndex[i] = index;
+				}
+			}
+		}
+		nodes = new Node[indices.size()];
+		System.arraycopy(nodeList, 0, nodes, 0, nodes.length);
+
+		// springs per node
+		nodeStart = new int[nodes.length + 1];
+		for (int i = 0; i < springCount; i++) {
+			nodeStart[fromIndex[i] + 1]++;
+			nodeStart[toIndex[i] + 1]++;
+		}
+		for (int n = 0; n < nodes.length; n++) {
+			nodeStart[n + 1] += nodeStart[n];
+		}
+		nodeSprings = new int[springCount * 2];
+		int[] fill = new int[nodes.length];
+		for (int i = 0; i < springCount; i++) {
+			nodeSprings[nodeStart[fromIndex[i]] + fill[fromIndex[i]]++] = i << 1;
+			nodeSprings[nodeStart[toIndex[i]] + fill[toIndex[i]]++] = (i << 1) | 1;
+		}
+	}
+
+}
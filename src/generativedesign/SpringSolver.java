@@ -0,0 +1,355 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+/**
+ * Position based solver for springs. Instead of turning the length error of a
+ * spring into a velocity impulse (as Spring.update() does), the positions of
+ * the attached nodes are corrected directly, several times per frame. Stiff
+ * structures like chains, ropes or meshes keep their form much better and
+ * settle within a few frames.
+ * <p>
+ * The solver works on the same Spring objects. Call update() after updating
+ * the nodes, instead of calling update() for every spring:
+ * 
+ * <pre>
+ * SpringSolver solver = new SpringSolver(springs);
+ * ...
+ * for (int i = 0; i &lt; nodes.length; i++) nodes[i].update();
+ * solver.update();
+ * </pre>
+ * 
+ * Length, stiffness and damping of the springs may change at any time. If
+ * springs are added or removed or their nodes are exchanged, call
+ * setSprings() again.
+ */
+public class SpringSolver {
+
+	// ------ constants ------
+	/**
+	 * Springs are solved one after another, always using the latest positions
+	 * of the nodes. Springs that don't share a node are grouped, so every group
+	 * can be solved in parallel.
+	 */
+	public final static int GAUSS_SEIDEL = 0;
+	/**
+	 * All springs are solved based on the positions of the last iteration and
+	 * the corrections for each node are averaged. Converges slower than
+	 * GAUSS_SEIDEL, but the result doesn't depend on the order of the springs.
+	 */
+	public final static int JACOBI = 1;
+
+	// more springs per node than this are solved one after another
+	final static int MAX_COLORS = 64;
+	// minimum number of springs or nodes per parallel task
+	final static int CHUNK_SIZE = 2048;
+
+	// ------ public properties ------
+	/**
+	 * One of the constants GAUSS_SEIDEL (default) or JACOBI.
+	 */
+	public int mode = GAUSS_SEIDEL;
+	/**
+	 * Number of iterations per call of update() (default = 4)
+	 */
+	public int iterations = 4;
+	/**
+	 * Over-relaxation for the JACOBI mode: 1 = no over-relaxation (default),
+	 * values up to 2 speed up the convergence.
+	 */
+	public float relaxation = 1;
+	/**
+	 * Use several cores for large spring systems (default = true)
+	 */
+	public boolean parallel = true;
+
+	// ------ private properties ------
+	Spring[] springs = new Spring[0];
+	Node[] nodes = new Node[0];
+	int springCount = 0;
+	// indices of the nodes of every spring
+	int[] fromIndex, toIndex;
+	// spring indices sorted by color, colorStart[c] is the first of color c
+	int[] colorOrder;
+	int[] colorStart;
+	// springs per node (only for JACOBI)
+	int[] nodeStart, nodeSprings;
+	// stiffness per iteration, corrections of the JACOBI mode
+	float[] k = new float[0];
+	float[] corrections;
+
+	// ------ constructors ------
+	/**
+	 * @param theSprings
+	 *            Springs to solve. The array may be filled up with null at the
+	 *            end.
+	 */
+	public SpringSolver(Spring[] theSprings) {
+		setSprings(theSprings);
+	}
+
+	/**
+	 * @param theSprings
+	 *            Springs to solve
+	 * @param theIterations
+	 *            Number of iterations per frame
+	 */
+	public SpringSolver(Spring[] theSprings, int theIterations) {
+		iterations = theIterations;
+		setSprings(theSprings);
+	}
+
+	// ------ update ------
+	/**
+	 * Corrects the positions of all nodes attached to the springs.
+	 */
+	public void update() {
+		if (springCount == 0 || iterations < 1)
+			return;
+
+		// the stiffness is applied per iteration, so that the overall result
+		// doesn't depend on the number of iterations
+		float exponent = 1f / iterations;
+		for (int i = 0; i < springCount; i++) {
+			float s = Math.min(Math.max(springs[i].stiffness, 0), 1);
+			k[i] = 1 - (float) Math.pow(1 - s, exponent);
+		}
+
+		for (int it = 0; it < iterations; it++) {
+			if (mode == JACOBI) {
+				iterateJacobi();
+			} else {
+				iterateGaussSeidel();
+			}
+		}
+	}
+
+	void iterateGaussSeidel() {
+		for (int c = 0; c <= MAX_COLORS; c++) {
+			int start = colorStart[c];
+			int end = colorStart[c + 1];
+			if (start == end)
+				continue;
+			if (c == MAX_COLORS) {
+				// springs that didn't get a color share nodes with others
+				for (int i = start; i < end; i++) {
+					solve(colorOrder[i]);
+				}
+			} else {
+				solveLoop.execute(start, end, CHUNK_SIZE, parallel);
+			}
+		}
+	}
+
+	ParallelLoop solveLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int i = theStart; i < theEnd; i++) {
+				solve(colorOrder[i]);
+			}
+		}
+	};
+
+	void solve(int theIndex) {
+		Spring s = springs[theIndex];
+		Node a = nodes[fromIndex[theIndex]];
+		Node b = nodes[toIndex[theIndex]];
+
+		float dx = b.x - a.x;
+		float dy = b.y - a.y;
+		float dz = b.z - a.z;
+		float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (d == 0)
+			return;
+
+		// both nodes move half of the way
+		float f = 0.5f * k[theIndex] * (d - s.length) / d;
+		dx *= f;
+		dy *= f;
+		dz *= f;
+		a.x += dx;
+		a.y += dy;
+		a.z += dz;
+		b.x -= dx;
+		b.y -= dy;
+		b.z -= dz;
+
+		// the velocities keep the undamped part of the correction
+		float v = 1 - s.damping;
+		a.velocity.x += dx * v;
+		a.velocity.y += dy * v;
+		a.velocity.z += dz * v;
+		b.velocity.x -= dx * v;
+		b.velocity.y -= dy * v;
+		b.velocity.z -= dz * v;
+	}
+
+	void iterateJacobi() {
+		correctionLoop.execute(0, springCount, CHUNK_SIZE, parallel);
+		applyLoop.execute(0, nodes.length, CHUNK_SIZE, parallel);
+	}
+
+	ParallelLoop correctionLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int i = theStart; i < theEnd; i++) {
+				Node a = nodes[fromIndex[i]];
+				Node b = nodes[toIndex[i]];
+				float dx = b.x - a.x;
+				float dy = b.y - a.y;
+				float dz = b.z - a.z;
+				float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+				float f = 0;
+				if (d > 0) {
+					f = 0.5f * k[i] * (d - springs[i].length) / d;
+				}
+				corrections[i * 3] = dx * f;
+				corrections[i * 3 + 1] = dy * f;
+				corrections[i * 3 + 2] = dz * f;
+			}
+		}
+	};
+
+	ParallelLoop applyLoop = new ParallelLoop() {
+		void run(int theStart, int theEnd) {
+			for (int n = theStart; n < theEnd; n++) {
+				int start = nodeStart[n];
+				int end = nodeStart[n + 1];
+				if (start == end)
+					continue;
+				float px = 0, py = 0, pz = 0;
+				float vx = 0, vy = 0, vz = 0;
+				for (int j = start; j < end; j++) {
+					// lowest bit: 0 = from node, 1 = to node
+					int i = nodeSprings[j] >> 1;
+					float sign = (nodeSprings[j] & 1) == 0 ? 1 : -1;
+					float v = sign * (1 - springs[i].damping);
+					px += sign * corrections[i * 3];
+					py += sign * corrections[i * 3 + 1];
+					pz += sign * corrections[i * 3 + 2];
+					vx += v * corrections[i * 3];
+					vy += v * corrections[i * 3 + 1];
+					vz += v * corrections[i * 3 + 2];
+				}
+				float f = relaxation / (end - start);
+				Node node = nodes[n];
+				node.x += px * f;
+				node.y += py * f;
+				node.z += pz * f;
+				node.velocity.x += vx * f;
+				node.velocity.y += vy * f;
+				node.velocity.z += vz * f;
+			}
+		}
+	};
+
+	// ------ topology ------
+	/**
+	 * Sets the springs to solve and analyzes which nodes they connect. Has to
+	 * be called again whenever springs are added or removed or the nodes of a
+	 * spring are changed.
+	 * 
+	 * @param theSprings
+	 *            Springs to solve. The array may be filled up with null at the
+	 *            end.
+	 */
+	public void setSprings(Spring[] theSprings) {
+		SpringGraph graph = new SpringGraph(theSprings);
+		springs = graph.springs;
+		springCount = graph.springCount;
+		nodes = graph.nodes;
+		fromIndex = graph.fromIndex;
+		toIndex = graph.toIndex;
+		nodeStart = graph.nodeStart;
+		nodeSprings = graph.nodeSprings;
+
+		// greedy coloring: springs of one color don't share any node
+		long[] usedColors = new long[nodes.length];
+		int[] colors = new int[springCount];
+		colorStart = new int[MAX_COLORS + 2];
+		for (int i = 0; i < springCount; i++) {
+			long used = usedColors[fromIndex[i]] | usedColors[toIndex[i]];
+			int c = Long.numberOfTrailingZeros(~used);
+			if (c < MAX_COLORS) {
+				usedColors[fromIndex[i]] |= 1L << c;
+				usedColors[toIndex[i]] |= 1L << c;
+			}
+			colors[i] = c;
+			colorStart[c + 1]++;
+		}
+		for (int c = 0; c <= MAX_COLORS; c++) {
+			colorStart[c + 1] += colorStart[c];
+		}
+		colorOrder = new int[springCount];
+		int[] fill = new int[MAX_COLORS + 1];
+		for (int i = 0; i < springCount; i++) {
+			int c = colors[i];
+			colorOrder[colorStart[c] + fill[c]++] = i;
+		}
+
+		k = new float[springCount];
+		corrections = new float[springCount * 3];
+	}
+
+	// ------ getters and setters ------
+	public Spring[] getSprings() {
+		return springs;
+	}
+
+	/**
+	 * @return All nodes that are attached to at least one of the springs
+	 */
+	public Node[] getNodes() {
+		return nodes;
+	}
+
+	public int getMode() {
+		return mode;
+	}
+
+	public void setMode(int theMode) {
+		this.mode = theMode;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public void setIterations(int theIterations) {
+		this.iterations = theIterations;
+	}
+
+	public float getRelaxation() {
+		return relaxation;
+	}
+
+	public void setRelaxation(float theRelaxation) {
+		this.relaxation = theRelaxation;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean theParallel) {
+		this.parallel = theParallel;
+	}
+
+}
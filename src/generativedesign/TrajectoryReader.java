@@ -0,0 +1,222 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import processing.core.PApplet;
+
+/**
+ * Reads files written by the class TrajectoryRecorder. The file is mapped
+ * into memory, so any frame can be accessed directly, e.g. for scrubbing
+ * through a recorded simulation.
+ * 
+ * <pre>
+ * reader = new TrajectoryReader(this, "nodes.traj");
+ * ...
+ * reader.readFrame(frameCount % reader.getFrameCount(), nodes);
+ * </pre>
+ */
+public class TrajectoryReader {
+
+	// ------ private properties ------
+	String path;
+	int nodeCount = 0;
+	int frameCount = 0;
+	int frameSize;
+	float minX, minY, minZ;
+	float stepX, stepY, stepZ;
+
+	// a mapped buffer can't be larger than 2 GB, so large files are mapped
+	// in several segments of whole frames
+	MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	int framesPerSegment;
+
+	// ------ constructors ------
+	/**
+	 * Opens a file written by TrajectoryRecorder.
+	 * 
+	 * @param theParent
+	 *            Reference to a PApplet. Typically use "this"
+	 * @param theFileName
+	 *            Name of the file. Relative paths are relative to the sketch
+	 *            folder.
+	 */
+	public TrajectoryReader(PApplet theParent, String theFileName) {
+		path = theParent.sketchPath(theFileName);
+
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(path, "r");
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(
+					TrajectoryRecorder.HEADER_SIZE).order(
+					ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					break;
+			}
+			header.flip();
+			if (header.remaining() < TrajectoryRecorder.HEADER_SIZE
+					|| header.getInt() != TrajectoryRecorder.MAGIC
+					|| header.getInt() != TrajectoryRecorder.VERSION) {
+				System.out.println(path + " is not a trajectory file");
+				return;
+			}
+			nodeCount = header.getInt();
+			minX = header.getFloat();
+			minY = header.getFloat();
+			minZ = header.getFloat();
+			stepX = step(minX, header.getFloat());
+			stepY = step(minY, header.getFloat());
+			stepZ = step(minZ, header.getFloat());
+
+			frameSize = nodeCount * 6;
+			if (frameSize == 0)
+				return;
+			long dataSize = channel.size() - TrajectoryRecorder.HEADER_SIZE;
+			frameCount = (int) Math.min(dataSize / frameSize,
+					Integer.MAX_VALUE);
+			framesPerSegment = Math.max(Integer.MAX_VALUE / frameSize, 1);
+
+			int segmentCount = (frameCount + framesPerSegment - 1)
+					/ framesPerSegment;
+			segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long start = TrajectoryRecorder.HEADER_SIZE + (long) i
+						* framesPerSegment * frameSize;
+				int frames = Math.min(framesPerSegment, frameCount - i
+						* framesPerSegment);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, (long) frames * frameSize);
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} catch (IOException e) {
+			System.out.println(path + " not accessible");
+			frameCount = 0;
+		} finally {
+			// the mapped buffers stay valid after closing the file
+			if (file != null) {
+				try {
+					file.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	static float step(float theMin, float theMax) {
+		return (theMax - theMin) / TrajectoryRecorder.MAX_VALUE;
+	}
+
+	// ------ reading ------
+	/**
+	 * Sets the positions of the nodes to the ones of the given frame.
+	 * 
+	 * @param theFrame
+	 *            Index of the frame (0 to getFrameCount() - 1)
+	 * @param theNodes
+	 *            Nodes to set. Stops at the end of the array, at the first
+	 *            null or after getNodeCount() nodes.
+	 */
+	public void readFrame(int theFrame, Node[] theNodes) {
+		ByteBuffer segment = segment(theFrame);
+		int offset = (theFrame % framesPerSegment) * frameSize;
+		int count = Math.min(theNodes.length, nodeCount);
+		for (int i = 0; i < count; i++) {
+			Node node = theNodes[i];
+			if (node == null)
+				break;
+			node.x = minX + (segment.getShort(offset) & 0xFFFF) * stepX;
+			node.y = minY + (segment.getShort(offset + 2) & 0xFFFF) * stepY;
+			node.z = minZ + (segment.getShort(offset + 4) & 0xFFFF) * stepZ;
+			offset += 6;
+		}
+	}
+
+	/**
+	 * Reads the positions of the given frame.
+	 * 
+	 * @param theFrame
+	 *            Index of the frame (0 to getFrameCount() - 1)
+	 * @param thePositions
+	 *            Array for the positions (x, y and z for every node). If null
+	 *            or too small, a new array is created.
+	 * @return Array containing the positions
+	 */
+	public float[] readFrame(int theFrame, float[] thePositions) {
+		if (thePositions == null || thePositions.length < nodeCount * 3) {
+			thePositions = new float[nodeCount * 3];
+		}
+		ByteBuffer segment = segment(theFrame);
+		int offset = (theFrame % framesPerSegment) * frameSize;
+		for (int i = 0; i < nodeCount * 3; i += 3) {
+			thePositions[i] = minX + (segment.getShort(offset) & 0xFFFF)
+					* stepX;
+			thePositions[i + 1] = minY
+					+ (segment.getShort(offset + 2) & 0xFFFF) * stepY;
+			thePositions[i + 2] = minZ
+					+ (segment.getShort(offset + 4) & 0xFFFF) * stepZ;
+			offset += 6;
+		}
+		return thePositions;
+	}
+
+	// returns the segment containing the given frame. only absolute get
+	// methods are used, so the buffers can be shared.
+	ByteBuffer segment(int theFrame) {
+		if (theFrame < 0 || theFrame >= frameCount) {
+			throw new IndexOutOfBoundsException("Frame " + theFrame
+					+ " is not between 0 and " + (frameCount - 1));
+		}
+		return segments[theFrame / framesPerSegment];
+	}
+
+	// ------ getters ------
+	/**
+	 * @return Number of frames in the file
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return Number of nodes per frame
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return Absolute path of the file
+	 */
+	public String getPath() {
+		return path;
+	}
+
+}
@@ -0,0 +1,293 @@
+/*
+  This library is part of the book: 
+  Generative Gestaltung, ISBN: 978-3-87439-759-9
+  First Edition, Hermann Schmidt, Mainz, 2009
+  Copyright (c) 2009 Hartmut Bohnacker, Benedikt Gross, Julia Laub, Claudius Lazzeroni
+
+  http://www.generative-gestaltung.de
+
+  This library is free software; you can redistribute it and/or modify it under the terms 
+  of the GNU Lesser General Public License as published by the Free Software Foundation; 
+  either version 2.1 of the License, or (at your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+  See the GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this 
+  library; if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+  Boston, MA 02110, USA
+*/
+
+package generativedesign;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import processing.core.PApplet;
+
+/**
+ * Records the positions of nodes frame by frame into a binary file, e.g. for
+ * rendering a simulation offline. Every coordinate is stored as a 16 bit
+ * value inside the bounds given to the constructor, so one frame takes 6
+ * bytes per node. Writing is done by a background thread, so record() just
+ * copies the positions and returns.
+ * <p>
+ * Use the class TrajectoryReader to read the frames again.
+ * 
+ * <pre>
+ * recorder = new TrajectoryRecorder(this, "nodes.traj", nodes, 0, 0, 0, width, height, 0);
+ * ...
+ * recorder.record(); // in draw()
+ * ...
+ * recorder.close(); // when done
+ * </pre>
+ */
+public class TrajectoryRecorder {
+
+	// ------ file format ------
+	final static int MAGIC = 0x52544447; // "GDTR"
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 64;
+	final static int MAX_VALUE = 65535;
+
+	// number of frames that may wait for being written
+	final static int BUFFER_COUNT = 8;
+
+	// ------ private properties ------
+	Node[] nodes;
+	int nodeCount;
+	float minX, minY, minZ, maxX, maxY, maxZ;
+	float scaleX, scaleY, scaleZ;
+
+	String path;
+	FileChannel channel;
+	int frameCount = 0;
+
+	BlockingQueue<ByteBuffer> freeBuffers;
+	BlockingQueue<ByteBuffer> filledBuffers;
+	// empty buffer that tells the writer thread to stop
+	final ByteBuffer END = ByteBuffer.allocate(0);
+	Thread writer;
+	volatile IOException error;
+
+	// ------ constructors ------
+	/**
+	 * Creates the file and writes its header. The number of nodes can't be
+	 * changed afterwards.
+	 * 
+	 * @param theParent
+	 *            Reference to a PApplet. Typically use "this"
+	 * @param theFileName
+	 *            Name of the file. Relative paths are relative to the sketch
+	 *            folder.
+	 * @param theNodes
+	 *            Nodes to record. The array may be filled up with null at the
+	 *            end.
+	 * @param theMinX
+	 *            Minimum x position. Positions outside of the bounds are
+	 *            clamped.
+	 * @param theMinY
+	 *            Minimum y position
+	 * @param theMinZ
+	 *            Minimum z position
+	 * @param theMaxX
+	 *            Maximum x position
+	 * @param theMaxY
+	 *            Maximum y position
+	 * @param theMaxZ
+	 *            Maximum z position
+	 */
+	public TrajectoryRecorder(PApplet theParent, String theFileName,
+			Node[] theNodes, float theMinX, float theMinY, float theMinZ,
+			float theMaxX, float theMaxY, float theMaxZ) {
+		nodes = theNodes;
+		nodeCount = 0;
+		while (nodeCount < nodes.length && nodes[nodeCount] != null)
+			nodeCount++;
+
+		minX = theMinX;
+		minY = theMinY;
+		minZ = theMinZ;
+		maxX = theMaxX;
+		maxY = theMaxY;
+		maxZ = theMaxZ;
+		scaleX = scale(minX, maxX);
+		scaleY = scale(minY, maxY);
+		scaleZ = scale(minZ, maxZ);
+
+		// resolved like in TrajectoryReader, so the same name reads it back
+		path = theParent.sketchPath(theFileName);
+		PApplet.createPath(path);
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(path, "rw");
+			channel = file.getChannel();
+			channel.truncate(0);
+			writeHeader();
+		} catch (IOException e) {
+			System.out.println(path + " not accessible");
+			// closing the file closes the channel as well
+			if (file != null) {
+				try {
+					file.close();
+				} catch (IOException e2) {
+				}
+			}
+			channel = null;
+			return;
+		}
+
+		int frameSize = nodeCount * 6;
+		freeBuffers = new ArrayBlockingQueue<ByteBuffer>(BUFFER_COUNT);
+		filledBuffers = new ArrayBlockingQueue<ByteBuffer>(BUFFER_COUNT + 1);
+		for (int i = 0; i < BUFFER_COUNT; i++) {
+			freeBuffers.add(ByteBuffer.allocateDirect(frameSize).order(
+					ByteOrder.LITTLE_ENDIAN));
+		}
+
+		writer = new Thread("TrajectoryRecorder") {
+			@Override
+			public void run() {
+				write();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	static float scale(float theMin, float theMax) {
+		if (theMax > theMin)
+			return MAX_VALUE / (theMax - theMin);
+		return 0;
+	}
+
+	void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(nodeCount);
+		header.putFloat(minX);
+		header.putFloat(minY);
+		header.putFloat(minZ);
+		header.putFloat(maxX);
+		header.putFloat(maxY);
+		header.putFloat(maxZ);
+		header.rewind();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+	}
+
+	// ------ recording ------
+	/**
+	 * Stores the current positions of the nodes as a new frame. Only waits if
+	 * the writer thread is more than a few frames behind.
+	 * 
+	 * @return false, if the frame couldn't be recorded
+	 */
+	public boolean record() {
+		if (channel == null || error != null)
+			return false;
+
+		ByteBuffer buffer;
+		try {
+			buffer = freeBuffers.take();
+		} catch (InterruptedException e) {
+			return false;
+		}
+
+		buffer.clear();
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = nodes[i];
+			buffer.putShort(quantize(node.x, minX, scaleX));
+			buffer.putShort(quantize(node.y, minY, scaleY));
+			buffer.putShort(quantize(node.z, minZ, scaleZ));
+		}
+		buffer.flip();
+
+		filledBuffers.add(buffer);
+		frameCount++;
+		return true;
+	}
+
+	static short quantize(float theValue, float theMin, float theScale) {
+		int q = Math.round((theValue - theMin) * theScale);
+		if (q < 0)
+			q = 0;
+		if (q > MAX_VALUE)
+			q = MAX_VALUE;
+		return (short) q;
+	}
+
+	// runs in the writer thread
+	void write() {
+		while (true) {
+			ByteBuffer buffer;
+			try {
+				buffer = filledBuffers.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (buffer == END)
+				return;
+
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				if (error == null) {
+					System.out.println("error while writing " + path);
+				}
+				error = e;
+			}
+			freeBuffers.add(buffer);
+		}
+	}
+
+	/**
+	 * Writes all remaining frames and closes the file.
+	 */
+	public void close() {
+		if (channel == null)
+			return;
+
+		filledBuffers.add(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+		channel = null;
+	}
+
+	// ------ getters ------
+	/**
+	 * @return Number of recorded frames
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return Absolute path of the file
+	 */
+	public String getPath() {
+		return path;
+	}
+
+}